@@ -6,6 +6,12 @@ import java.io.Serializable;
  * The `CFile` class represents a serializable object that encapsulates a file's
  * name and its content as a byte array. This class is designed to be used for
  * various file-related operations and serialization purposes.
+ *
+ * <p>
+ * A `CFile` also carries the SHA-256 hash of the content. A worker that
+ * already holds a task class asks for it with a `CFile` naming the class and
+ * giving the hash of its copy, but no content; if the copy is current, the
+ * master answers the same way and the content is not transferred again.
  * 
  */
 public class CFile implements Serializable {
@@ -14,6 +20,7 @@ public class CFile implements Serializable {
 
     private String fname;
     private byte[] fbyte;
+    private String fhash;
 
     /**
      * Constructs a new `CFile` instance with default values.
@@ -33,6 +40,21 @@ public class CFile implements Serializable {
         this.fbyte = fbyte;
     }
 
+    /**
+     * Constructs a new `CFile` instance with the specified file name, content
+     * and hash of the content.
+     *
+     * @param fname The name of the file.
+     * @param fbyte The binary content of the file as a byte array, or null
+     * if the content is not sent.
+     * @param fhash The SHA-256 hash of the content in hexadecimal.
+     */
+    public CFile(String fname, byte[] fbyte, String fhash) {
+        this.fname = fname;
+        this.fbyte = fbyte;
+        this.fhash = fhash;
+    }
+
     /**
      * Gets the file name.
      *
@@ -69,4 +91,23 @@ public class CFile implements Serializable {
         this.fbyte = fbyte;
     }
 
+    /**
+     * Gets the hash of the content.
+     *
+     * @return The SHA-256 hash of the content in hexadecimal, or null if it
+     * is not known.
+     */
+    public String getFhash() {
+        return fhash;
+    }
+
+    /**
+     * Sets the hash of the content.
+     *
+     * @param fhash The SHA-256 hash of the content in hexadecimal.
+     */
+    public void setFhash(String fhash) {
+        this.fhash = fhash;
+    }
+
 }
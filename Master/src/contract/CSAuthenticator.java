@@ -5,8 +5,10 @@ import java.io.Serializable;
 /**
  * The `CSAuthenticator` class represents a serializable object used for
  * authentication and session management. It encapsulates user-related
- * information, such as plain and ciphered usernames, a verification string, and
- * a session key.
+ * information, such as plain and ciphered usernames, a verification string, a
+ * session key, the cipher suite and compression used for the session, a
+ * session ticket for resuming it and the key share of the elliptic-curve
+ * handshake.
  *
  */
 public class CSAuthenticator implements Serializable {
@@ -15,6 +17,10 @@ public class CSAuthenticator implements Serializable {
     private String CipherUserName;
     private String VerficationString;
     private String SessionKey;
+    private String CipherSuite;
+    private String SessionTicket;
+    private String KeyShare;
+    private String Compression;
 
     /**
      * Constructs a new `CSAuthenticator` instance with default values.
@@ -110,4 +116,82 @@ public class CSAuthenticator implements Serializable {
         this.SessionKey = SessionKey;
     }
 
+    /**
+     * Gets the cipher suite for the session. The worker sets the suite it
+     * asks for, the master the suite it has chosen.
+     *
+     * @return the CipherSuite
+     */
+    public String getCipherSuite() {
+        return CipherSuite;
+    }
+
+    /**
+     * Sets the cipher suite for the session.
+     *
+     * @param CipherSuite the CipherSuite to set
+     */
+    public void setCipherSuite(String CipherSuite) {
+        this.CipherSuite = CipherSuite;
+    }
+
+    /**
+     * Gets the session ticket. The master issues a ticket after a successful
+     * authentication; a worker presenting it on a later connection resumes
+     * its session without the RSA handshake.
+     *
+     * @return the SessionTicket
+     */
+    public String getSessionTicket() {
+        return SessionTicket;
+    }
+
+    /**
+     * Sets the session ticket.
+     *
+     * @param SessionTicket the SessionTicket to set
+     */
+    public void setSessionTicket(String SessionTicket) {
+        this.SessionTicket = SessionTicket;
+    }
+
+    /**
+     * Gets the X25519 key share of the elliptic-curve handshake. A worker
+     * sending a key share asks for that handshake instead of the RSA one.
+     *
+     * @return the KeyShare
+     */
+    public String getKeyShare() {
+        return KeyShare;
+    }
+
+    /**
+     * Sets the X25519 key share of the elliptic-curve handshake.
+     *
+     * @param KeyShare the KeyShare to set
+     */
+    public void setKeyShare(String KeyShare) {
+        this.KeyShare = KeyShare;
+    }
+
+    /**
+     * Gets the compression of the session. A worker sends the compression it
+     * supports and the master answers with the one it has chosen, or null
+     * for none.
+     *
+     * @return the Compression
+     */
+    public String getCompression() {
+        return Compression;
+    }
+
+    /**
+     * Sets the compression of the session.
+     *
+     * @param Compression the Compression to set
+     */
+    public void setCompression(String Compression) {
+        this.Compression = Compression;
+    }
+
 }
@@ -0,0 +1,275 @@
+package contract;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The `CalculateBatchGCD` class represents a task for calculating the
+ * greatest common divisors of a whole batch of numbers, so one task object
+ * carries the work of many `CalculateGCD` tasks.
+ *
+ * <p>
+ * The task either pairs two arrays of numbers element by element, or finds
+ * for every number of a single array its GCD with the product of all the
+ * others, which shows which numbers share a factor with any other number. The
+ * pairs are calculated one by one with the binary GCD. The all-pairs case is
+ * calculated with the batch GCD method of Bernstein rather than with a GCD
+ * for every pair: a product tree multiplies the numbers together, and a
+ * remainder tree reduces the product P modulo the square of every number, so
+ * the GCD of n and P / n is the GCD of n and (P mod n^2) / n. This takes time
+ * close to linear in the size of the product instead of quadratic in the
+ * number of numbers. The nodes of every level of both trees are calculated in
+ * parallel on the fork/join pool.
+ *
+ * <p>
+ * The numbers and results are held in `long[]` arrays and written as varints.
+ * The task is self-contained, as a worker only receives this class file.
+ *
+ */
+public class CalculateBatchGCD implements CompactTask, Serializable {
+
+    /**
+     * largest number of numbers in a batch; a batch of pairs with their
+     * results, at up to ten bytes a number as a zig-zag varint, stays within
+     * the largest message of a session
+     */
+    public static final int MAX_COUNT = 1 << 21;
+
+    private long[] first;
+    private long[] second;
+    private long[] result;
+
+    /**
+     * Constructs a new `CalculateBatchGCD` instance to be read by the
+     * `MessageCodec`.
+     */
+    public CalculateBatchGCD() {
+    }
+
+    /**
+     * Constructs a new `CalculateBatchGCD` instance for calculating the GCD
+     * of every pair of numbers at the same index.
+     *
+     * @param first The first numbers of the pairs.
+     * @param second The second numbers of the pairs.
+     * @throws IllegalArgumentException If the arrays differ in length or are
+     * longer than `MAX_COUNT`.
+     */
+    public CalculateBatchGCD(long[] first, long[] second) {
+        if (first.length != second.length) {
+            throw new IllegalArgumentException("Pairs of " + first.length + " and " + second.length + " numbers");
+        }
+        checkCount(first.length);
+        this.first = first;
+        this.second = second;
+    }
+
+    /**
+     * Constructs a new `CalculateBatchGCD` instance for calculating the GCD
+     * of every number with the product of all the others.
+     *
+     * @param numbers The positive numbers.
+     * @throws IllegalArgumentException If a number is not positive or there
+     * are more than `MAX_COUNT` numbers.
+     */
+    public CalculateBatchGCD(long[] numbers) {
+        checkCount(numbers.length);
+        for (long number : numbers) {
+            if (number <= 0) {
+                throw new IllegalArgumentException("Number " + number + " is not positive");
+            }
+        }
+        this.first = numbers;
+    }
+
+    private static void checkCount(long count) {
+        if (count > MAX_COUNT) {
+            throw new IllegalArgumentException(count + " numbers exceed " + MAX_COUNT);
+        }
+    }
+
+    /**
+     * Executes the GCD calculation for the whole batch and stores the result.
+     */
+    @Override
+    public void executeTask() {
+        long[] gcds = new long[first.length];
+        if (second != null) {
+            for (int i = 0; i < gcds.length; i++) {
+                gcds[i] = gcd(first[i], second[i]);
+            }
+        } else if (gcds.length > 0) {
+            BigInteger[] remainders = remainderTree(productTree(first));
+            for (int i = 0; i < gcds.length; i++) {
+                // (P mod n^2) / n is less than n, so it fits in a long.
+                gcds[i] = gcd(first[i], remainders[i].divide(BigInteger.valueOf(first[i])).longValue());
+            }
+        }
+        result = gcds;
+    }
+
+    /**
+     * Builds the product tree of the numbers. Level 0 holds the numbers and
+     * every level above the products of pairs of the level below; an odd
+     * node at the end is carried up as it is. The last level holds the
+     * product of all numbers.
+     */
+    private static BigInteger[][] productTree(long[] numbers) {
+        int levels = 1;
+        for (int size = numbers.length; size > 1; size = (size + 1) / 2) {
+            levels++;
+        }
+        BigInteger[][] tree = new BigInteger[levels][];
+        tree[0] = new BigInteger[numbers.length];
+        for (int i = 0; i < numbers.length; i++) {
+            tree[0][i] = BigInteger.valueOf(numbers[i]);
+        }
+        for (int level = 1; level < levels; level++) {
+            BigInteger[] below = tree[level - 1];
+            BigInteger[] nodes = new BigInteger[(below.length + 1) / 2];
+            IntStream.range(0, nodes.length).parallel().forEach(i
+                    -> nodes[i] = 2 * i + 1 < below.length ? below[2 * i].multiply(below[2 * i + 1]) : below[2 * i]);
+            tree[level] = nodes;
+        }
+        return tree;
+    }
+
+    /**
+     * Reduces the product at the root of a product tree modulo the square of
+     * every node, from the root down; the remainder of a node is taken from
+     * that of its parent, which keeps the operands small. The levels are
+     * released on the way down.
+     *
+     * @return P mod n^2 for every number n.
+     */
+    private static BigInteger[] remainderTree(BigInteger[][] tree) {
+        // P mod P^2 is P itself, unless P is 1, when every GCD is 1 anyway.
+        BigInteger[] remainders = tree[tree.length - 1];
+        for (int level = tree.length - 2; level >= 0; level--) {
+            BigInteger[] nodes = tree[level];
+            BigInteger[] parents = remainders;
+            BigInteger[] reduced = new BigInteger[nodes.length];
+            IntStream.range(0, nodes.length).parallel().forEach(i
+                    -> reduced[i] = parents[i / 2].mod(nodes[i].multiply(nodes[i])));
+            remainders = reduced;
+            tree[level] = null;
+        }
+        return remainders;
+    }
+
+    /**
+     * Calculates the GCD of two numbers with the binary GCD algorithm; the
+     * signs are ignored.
+     */
+    private static long gcd(long a, long b) {
+        a = Math.abs(a);
+        b = Math.abs(b);
+        if (a == 0) {
+            return b;
+        }
+        if (b == 0) {
+            return a;
+        }
+        int shift = Long.numberOfTrailingZeros(a | b);
+        a >>>= Long.numberOfTrailingZeros(a);
+        while (b != 0) {
+            b >>>= Long.numberOfTrailingZeros(b);
+            long difference = b - a;
+            if (Long.compareUnsigned(a, b) > 0) {
+                a = b;
+                difference = -difference;
+            }
+            b = difference;
+        }
+        return a << shift;
+    }
+
+    /**
+     * Gets the result of the GCD calculation.
+     *
+     * @return The GCD for every pair, or for every number with the product of
+     * the others, as a `long[]`.
+     */
+    @Override
+    public Object getResult() {
+        return result;
+    }
+
+    /**
+     * @return the first numbers of the pairs, or all numbers
+     */
+    public long[] getFirst() {
+        return first;
+    }
+
+    /**
+     * @return the second numbers of the pairs, or null if the GCD of every
+     * number with the product of the others is calculated
+     */
+    public long[] getSecond() {
+        return second;
+    }
+
+    /**
+     * Writes the numbers and the results.
+     *
+     * @param out The output to write to.
+     * @throws IOException If the task cannot be written.
+     */
+    @Override
+    public void writeTask(DataOutput out) throws IOException {
+        writeLongs(out, first);
+        writeLongs(out, second);
+        writeLongs(out, result);
+    }
+
+    /**
+     * Reads the numbers and the results.
+     *
+     * @param in The input to read from.
+     * @throws IOException If the task cannot be read.
+     */
+    @Override
+    public void readTask(DataInput in) throws IOException {
+        first = readLongs(in);
+        second = readLongs(in);
+        result = readLongs(in);
+        if (first == null || second != null && second.length != first.length || result != null && result.length != first.length) {
+            throw new IOException("Invalid batch");
+        }
+    }
+
+    private static void writeLongs(DataOutput out, long[] values) throws IOException {
+        MessageCodec.writeVarLong(out, values == null ? -1 : values.length);
+        if (values != null) {
+            for (long value : values) {
+                MessageCodec.writeVarLong(out, value);
+            }
+        }
+    }
+
+    private static long[] readLongs(DataInput in) throws IOException {
+        long count = MessageCodec.readVarLong(in);
+        if (count < 0) {
+            return null;
+        }
+        if (count > MAX_COUNT) {
+            throw new IOException("Batch too large: " + count);
+        }
+        // Grow with the data read rather than trusting the count.
+        long[] values = new long[(int) Math.min(count, 1024)];
+        for (int i = 0; i < count; i++) {
+            if (i == values.length) {
+                values = Arrays.copyOf(values, (int) Math.min(count, 2L * values.length));
+            }
+            values[i] = MessageCodec.readVarLong(in);
+        }
+        return values;
+    }
+
+}
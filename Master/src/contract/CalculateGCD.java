@@ -1,19 +1,30 @@
 package contract;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
+import java.math.BigInteger;
 
 /**
  * The `CalculateGCD` class represents a task for calculating the greatest common divisor (GCD) of two long integers.
  * It implements the `Task` interface and is also serializable, making it suitable for distributed computation scenarios.
  * 
  */
-public class CalculateGCD implements Task, Serializable {
+public class CalculateGCD implements CompactTask, Serializable {
 
-    private final long first;
-    private final long second;
+    private long first;
+    private long second;
 
     private Long result = null;
 
+    /**
+     * Constructs a new `CalculateGCD` instance to be read by the
+     * `MessageCodec`.
+     */
+    public CalculateGCD() {
+    }
+
     /**
      * Constructs a new `CalculateGCD` instance with the specified long integers.
      *
@@ -26,7 +37,7 @@ public class CalculateGCD implements Task, Serializable {
     }
 
     /**
-     * Executes the GCD calculation using the Euclidean algorithm and stores the result.
+     * Executes the GCD calculation using the binary GCD algorithm and stores the result.
      */
     @Override
     public void executeTask() {
@@ -34,25 +45,58 @@ public class CalculateGCD implements Task, Serializable {
     }
 
     /**
-     * Calculates the greatest common divisor (GCD) of two long integers using the Euclidean algorithm.
+     * Calculates the greatest common divisor (GCD) of two long integers using the binary GCD algorithm
+     * of Stein. Common factors of two are taken out with `Long.numberOfTrailingZeros`, and the odd
+     * remainders are reduced by subtraction and shifting, so the number of steps grows with the number
+     * of bits rather than with the quotient of the two integers.
+     *
+     * <p>
+     * The signs of the integers are ignored. The GCD of `Long.MIN_VALUE` and 0 or `Long.MIN_VALUE`
+     * is 2^63, which is returned as `Long.MIN_VALUE`.
      *
      * @param a The first long integer.
      * @param b The second long integer.
      * @return The GCD of the two long integers.
      */
     public long calculateGCD(long a, long b) {
+        // Long.MIN_VALUE stays as it is, which is 2^63 when read unsigned.
+        a = Math.abs(a);
+        b = Math.abs(b);
         if (a == 0) {
             return b;
-        } else {
-            while (b != 0) {
-                if (a > b) {
-                    a = a - b;
-                } else {
-                    b = b - a;
-                }
-            }
+        }
+        if (b == 0) {
             return a;
         }
+        int shift = Long.numberOfTrailingZeros(a | b);
+        a >>>= Long.numberOfTrailingZeros(a);
+        while (b != 0) {
+            b >>>= Long.numberOfTrailingZeros(b);
+            // Both odd: the difference is even and smaller than the larger one.
+            long difference = b - a;
+            if (Long.compareUnsigned(a, b) > 0) {
+                a = b;
+                difference = -difference;
+            }
+            b = difference;
+        }
+        return a << shift;
+    }
+
+    /**
+     * Calculates the greatest common divisor (GCD) of two integers of any size. Integers of less than 63
+     * bits are left to the binary GCD; larger ones to `BigInteger.gcd`, which reduces them by
+     * division first and then continues with the binary GCD as well.
+     *
+     * @param a The first integer.
+     * @param b The second integer.
+     * @return The GCD of the two integers, which is not negative.
+     */
+    public BigInteger calculateGCD(BigInteger a, BigInteger b) {
+        if (a.bitLength() < Long.SIZE - 1 && b.bitLength() < Long.SIZE - 1) {
+            return BigInteger.valueOf(calculateGCD(a.longValue(), b.longValue()));
+        }
+        return a.gcd(b);
     }
 
     /**
@@ -65,6 +109,35 @@ public class CalculateGCD implements Task, Serializable {
         return result;
     }
 
+    /**
+     * Writes the two long integers and the result.
+     *
+     * @param out The output to write to.
+     * @throws IOException If the task cannot be written.
+     */
+    @Override
+    public void writeTask(DataOutput out) throws IOException {
+        MessageCodec.writeVarLong(out, first);
+        MessageCodec.writeVarLong(out, second);
+        out.writeBoolean(result != null);
+        if (result != null) {
+            MessageCodec.writeVarLong(out, result);
+        }
+    }
+
+    /**
+     * Reads the two long integers and the result.
+     *
+     * @param in The input to read from.
+     * @throws IOException If the task cannot be read.
+     */
+    @Override
+    public void readTask(DataInput in) throws IOException {
+        first = MessageCodec.readVarLong(in);
+        second = MessageCodec.readVarLong(in);
+        result = in.readBoolean() ? MessageCodec.readVarLong(in) : null;
+    }
+
     /**
      * Gets the first long integer used for GCD calculation.
      *
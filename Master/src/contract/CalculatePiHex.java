@@ -0,0 +1,244 @@
+package contract;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * The `CalculatePiHex` class represents a task for calculating a window of
+ * the hexadecimal digits of Pi at a given position, without calculating the
+ * digits before it. Windows at different positions are independent, so one
+ * large Pi job can be shared out among many workers.
+ *
+ * <p>
+ * The digits are extracted with the Bailey-Borwein-Plouffe formula:
+ *
+ * <pre>
+ * pi = sum 16^-k (4/(8k+1) - 2/(8k+4) - 1/(8k+5) - 1/(8k+6))
+ * </pre>
+ *
+ * The fractional part of 16^d * pi, whose leading hexadecimal digits are the
+ * digits from position d on, is summed in 64-bit fixed point: the terms up
+ * to k = d are taken as (16^(d-k) mod (8k+j)) / (8k+j), and the sums wrap
+ * around modulo 1 by themselves. Every evaluation keeps as many digits as
+ * its rounding error allows, fewer if the digits after them are too close to
+ * a carry to be certain.
+ *
+ * <p>
+ * Positions count from 0, the first digit after the point, up to
+ * `MAX_POSITION`. The result is the digits as a lower-case hexadecimal
+ * string.
+ *
+ */
+public class CalculatePiHex implements CompactTask, Serializable {
+
+    /**
+     * largest position of a digit; 8 * position + 6 must fit in an `int` for
+     * the modular powers to fit in a `long`
+     */
+    public static final long MAX_POSITION = 250_000_000L;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private long position;
+    private int count;
+    private String result;
+
+    /**
+     * Constructs a new `CalculatePiHex` instance to be read by the
+     * `MessageCodec`.
+     */
+    public CalculatePiHex() {
+    }
+
+    /**
+     * Constructs a new `CalculatePiHex` instance for calculating a window of
+     * hexadecimal digits.
+     *
+     * @param position The position of the first digit, counting from 0 after
+     * the point.
+     * @param count The number of digits.
+     * @throws IllegalArgumentException If the window lies beyond
+     * `MAX_POSITION`.
+     */
+    public CalculatePiHex(long position, int count) {
+        checkWindow(position, count);
+        this.position = position;
+        this.count = count;
+    }
+
+    private static void checkWindow(long position, int count) {
+        if (position < 0 || count < 0 || position + count - 1 > MAX_POSITION) {
+            throw new IllegalArgumentException("Window of " + count + " digits at " + position + " exceeds " + MAX_POSITION);
+        }
+    }
+
+    /**
+     * Executes the digit extraction and stores the result.
+     */
+    @Override
+    public void executeTask() {
+        checkWindow(position, count);
+        char[] digits = new char[count];
+        int done = 0;
+        while (done < count) {
+            long d = position + done;
+            long fraction = fraction(d);
+            // Error of the fixed-point sum in units of 2^-64: below 2^-64 per
+            // term, 8 times for the four sums and their factors.
+            long error = 8 * (d + 18);
+            int taken = 0;
+            int most = Math.min(count - done, (64 - (64 - Long.numberOfLeadingZeros(error)) - 4) / 4);
+            for (int k = most; k >= 1 && taken == 0; k--) {
+                // The digits after the first k must be further than the
+                // error from a carry into them.
+                long tail = fraction << (4 * k);
+                long scaledError = error << (4 * k);
+                if (Long.compareUnsigned(tail, scaledError) > 0 && Long.compareUnsigned(tail, -scaledError) < 0) {
+                    taken = k;
+                }
+            }
+            if (taken == 0) {
+                // A run of 0 or f digits longer than the precision; the
+                // digit is taken as it is.
+                taken = 1;
+            }
+            for (int i = 0; i < taken; i++) {
+                digits[done + i] = HEX_DIGITS[(int) (fraction >>> (60 - 4 * i)) & 0xF];
+            }
+            done += taken;
+        }
+        result = new String(digits);
+    }
+
+    /**
+     * Computes the fractional part of 16^d * pi in 64-bit fixed point.
+     */
+    private static long fraction(long d) {
+        return 4 * series(d, 1) - 2 * series(d, 4) - series(d, 5) - series(d, 6);
+    }
+
+    /**
+     * Computes the fractional part of sum 16^(d-k) / (8k+j) in 64-bit fixed
+     * point.
+     */
+    private static long series(long d, int j) {
+        long sum = 0;
+        for (long k = 0; k <= d; k++) {
+            long m = 8 * k + j;
+            if (m == 1) {
+                continue;
+            }
+            // floor((2^64 - 1) / m), below 2^63 as m > 2.
+            long r = powerMod(d - k, m, Long.divideUnsigned(-1L, m));
+            // floor(r * 2^64 / m) in two steps of 32 bits; r < m < 2^31.
+            long high = (r << 32) / m;
+            long low = (((r << 32) % m) << 32) / m;
+            sum += high << 32 | low;
+        }
+        // The terms after k = d until they vanish in 64 bits.
+        for (long k = d + 1; 64 - 4 * (k - d) > 0; k++) {
+            sum += (1L << (64 - 4 * (k - d))) / (8 * k + j);
+        }
+        return sum;
+    }
+
+    /**
+     * Computes 16^exponent mod m for a modulus between 2 and 2^31. The
+     * products are reduced with Barrett's method, using the reciprocal of
+     * the modulus instead of a division per multiplication.
+     */
+    private static long powerMod(long exponent, long m, long reciprocal) {
+        long result = 1;
+        long base = 16 % m;
+        while (exponent != 0) {
+            if ((exponent & 1) != 0) {
+                result = reduce(result * base, m, reciprocal);
+            }
+            base = reduce(base * base, m, reciprocal);
+            exponent >>>= 1;
+        }
+        return result;
+    }
+
+    /**
+     * Reduces a product below 2^62 modulo m; the estimated quotient is at
+     * most one too small.
+     */
+    private static long reduce(long x, long m, long reciprocal) {
+        long r = x - Math.multiplyHigh(x, reciprocal) * m;
+        return r >= m ? r - m : r;
+    }
+
+    /**
+     * Gets the result of the digit extraction.
+     *
+     * @return The hexadecimal digits of the window as a String.
+     */
+    @Override
+    public Object getResult() {
+        return result;
+    }
+
+    /**
+     * @return the position of the first digit of the window
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the number of digits of the window
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Writes the window and the digits.
+     *
+     * @param out The output to write to.
+     * @throws IOException If the task cannot be written.
+     */
+    @Override
+    public void writeTask(DataOutput out) throws IOException {
+        MessageCodec.writeVarLong(out, position);
+        MessageCodec.writeVarLong(out, count);
+        out.writeBoolean(result != null);
+        if (result != null) {
+            // Two digits per byte.
+            byte[] packed = new byte[(result.length() + 1) / 2];
+            for (int i = 0; i < result.length(); i++) {
+                packed[i / 2] |= Character.digit(result.charAt(i), 16) << (i % 2 == 0 ? 4 : 0);
+            }
+            MessageCodec.writeBytes(out, packed);
+        }
+    }
+
+    /**
+     * Reads the window and the digits.
+     *
+     * @param in The input to read from.
+     * @throws IOException If the task cannot be read.
+     */
+    @Override
+    public void readTask(DataInput in) throws IOException {
+        position = MessageCodec.readVarLong(in);
+        count = (int) MessageCodec.readVarLong(in);
+        if (in.readBoolean()) {
+            byte[] packed = MessageCodec.readBytes(in);
+            if (packed == null || packed.length != ((long) count + 1) / 2) {
+                throw new IOException("Invalid result");
+            }
+            char[] digits = new char[count];
+            for (int i = 0; i < count; i++) {
+                digits[i] = HEX_DIGITS[(packed[i / 2] >> (i % 2 == 0 ? 4 : 0)) & 0xF];
+            }
+            result = new String(digits);
+        } else {
+            result = null;
+        }
+    }
+
+}
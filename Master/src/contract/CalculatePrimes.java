@@ -1,8 +1,10 @@
 package contract;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * The `CalculatePrimes` class represents a task for calculating prime numbers
@@ -10,15 +12,50 @@ import java.util.List;
  * serializable for distributed computation.
  *
  * <p>
- * The class provides methods to execute the prime number calculation and
- * retrieve the list of prime numbers.
+ * The primes are found with a segmented sieve of Eratosthenes. The sieve
+ * first finds the primes up to the square root of the upper bound, then
+ * crosses out their multiples in the range one segment at a time. A segment
+ * only holds the odd numbers, one bit each, and fits in the level-1 data
+ * cache, so the memory used while sieving does not depend on the size of the
+ * range. Ranges up to `MAX_HIGH` are accepted that hold an estimated
+ * `MAX_PRIMES` primes at most, so the result fits in memory and in one
+ * message.
+ *
+ * <p>
+ * The result is an array of the primes in ascending order; it is written by
+ * the `MessageCodec` as the distances between them, about one byte per
+ * prime.
  *
  */
-public class CalculatePrimes implements Task, Serializable {
+public class CalculatePrimes implements CompactTask, Serializable {
 
-    private final int low;
-    private final int high;
-    private List<Integer> result;
+    /**
+     * largest upper bound of a range
+     */
+    public static final long MAX_HIGH = 1_000_000_000_000L;
+
+    /**
+     * largest estimated number of primes in a range; the result takes 64 MB
+     * as a `long[]` and, at up to two bytes a distance, a quarter of the
+     * largest message of a session
+     */
+    public static final int MAX_PRIMES = 1 << 23;
+
+    /**
+     * odd numbers covered by one segment of the sieve: 32 KB of bits
+     */
+    private static final int SEGMENT_BITS = 32 * 1024 * 8;
+
+    private long low;
+    private long high;
+    private long[] result;
+
+    /**
+     * Constructs a new `CalculatePrimes` instance to be read by the
+     * `MessageCodec`.
+     */
+    public CalculatePrimes() {
+    }
 
     /**
      * Constructs a new `CalculatePrimes` instance for calculating prime numbers
@@ -28,47 +65,223 @@ public class CalculatePrimes implements Task, Serializable {
      * @param high The upper bound of the range.
      */
     public CalculatePrimes(int low, int high) {
+        this((long) low, (long) high);
+    }
+
+    /**
+     * Constructs a new `CalculatePrimes` instance for calculating prime numbers
+     * within the specified range.
+     *
+     * @param low The lower bound of the range.
+     * @param high The upper bound of the range, at most `MAX_HIGH`.
+     * @throws IllegalArgumentException If the upper bound is too large or
+     * the range holds too many primes.
+     */
+    public CalculatePrimes(long low, long high) {
+        checkRange(low, high);
         this.low = low;
         this.high = high;
     }
 
+    private static void checkRange(long low, long high) {
+        if (high > MAX_HIGH) {
+            throw new IllegalArgumentException("Upper bound " + high + " exceeds " + MAX_HIGH);
+        }
+        if (estimateCount(low, high) > MAX_PRIMES) {
+            throw new IllegalArgumentException("Range " + low + "-" + high + " holds more than " + MAX_PRIMES + " primes");
+        }
+    }
+
     /**
      * Executes the prime number calculation for the specified range and stores
      * the result.
      */
     @Override
     public void executeTask() {
-        result = new ArrayList<>();
-        for (int i = low; i <= high; i++) {
-            if (isPrime(i)) {
-                result.add(i);
+        checkRange(low, high);
+        long from = Math.max(low, 2);
+        if (from > high) {
+            result = new long[0];
+            return;
+        }
+        long[] primes = new long[(int) Math.min(estimateCount(from, high), 1 << 20)];
+        int count = 0;
+        if (from == 2) {
+            primes[count++] = 2;
+            from = 3;
+        }
+        from |= 1;
+        if (from <= high) {
+            int[] sievingPrimes = smallOddPrimes((int) Math.sqrt((double) high) + 1);
+            // Next odd multiple of every sieving prime still to be crossed out.
+            long[] next = new long[sievingPrimes.length];
+            for (int i = 0; i < sievingPrimes.length; i++) {
+                long p = sievingPrimes[i];
+                long first = Math.max(p * p, (from + p - 1) / p * p);
+                next[i] = (first & 1) == 0 ? first + p : first;
+            }
+            long[] segment = new long[SEGMENT_BITS / 64];
+            for (long start = from; start <= high; start += 2L * SEGMENT_BITS) {
+                long end = Math.min(high, start + 2L * SEGMENT_BITS - 1);
+                int bits = (int) ((end - start) / 2) + 1;
+                Arrays.fill(segment, 0);
+                for (int i = 0; i < sievingPrimes.length; i++) {
+                    int p = sievingPrimes[i];
+                    if ((long) p * p > end) {
+                        // The multiples of this and all larger primes start
+                        // beyond this segment.
+                        break;
+                    }
+                    long multiple = next[i];
+                    if (multiple > end) {
+                        continue;
+                    }
+                    int bit = (int) ((multiple - start) >>> 1);
+                    for (; bit < bits; bit += p) {
+                        segment[bit >>> 6] |= 1L << bit;
+                    }
+                    next[i] = start + 2L * bit;
+                }
+                // Collect the odd numbers left uncrossed.
+                for (int word = 0; word * 64 < bits; word++) {
+                    long primeBits = ~segment[word];
+                    if (word * 64 + 64 > bits) {
+                        primeBits &= -1L >>> (64 - (bits - word * 64));
+                    }
+                    while (primeBits != 0) {
+                        int bit = word * 64 + Long.numberOfTrailingZeros(primeBits);
+                        if (count == primes.length) {
+                            primes = Arrays.copyOf(primes, count + (count >> 1) + 16);
+                        }
+                        primes[count++] = start + 2L * bit;
+                        primeBits &= primeBits - 1;
+                    }
+                }
             }
         }
+        result = count == primes.length ? primes : Arrays.copyOf(primes, count);
     }
 
     /**
-     * Checks if a given number is prime.
+     * Finds the odd primes up to a bound with a simple sieve of the odd
+     * numbers.
      *
-     * @param number The number to check for primality.
-     * @return `true` if the number is prime; otherwise, `false`.
+     * @param bound The upper bound, inclusive.
+     * @return The odd primes in ascending order.
      */
-    private boolean isPrime(int number) {
-        for (int i = 2; i < number; i++) {
-            if (number % i == 0) {
-                return false;
+    private static int[] smallOddPrimes(int bound) {
+        if (bound < 3) {
+            return new int[0];
+        }
+        // Bit i stands for the odd number 2i + 1.
+        int bits = (bound - 1) / 2 + 1;
+        long[] composite = new long[(bits + 63) >>> 6];
+        for (int i = 1; (2L * i + 1) * (2L * i + 1) <= bound; i++) {
+            if ((composite[i >>> 6] & (1L << i)) == 0) {
+                int p = 2 * i + 1;
+                for (int j = (p * p) >>> 1; j < bits; j += p) {
+                    composite[j >>> 6] |= 1L << j;
+                }
+            }
+        }
+        int[] primes = new int[bits];
+        int count = 0;
+        for (int i = 1; i < bits; i++) {
+            if ((composite[i >>> 6] & (1L << i)) == 0) {
+                primes[count++] = 2 * i + 1;
             }
         }
-        return true;
+        return Arrays.copyOf(primes, count);
+    }
+
+    /**
+     * Estimates the number of primes in a range from the prime number
+     * theorem, erring on the high side, so the result rarely has to grow.
+     *
+     * @param low The lower bound of the range.
+     * @param high The upper bound of the range.
+     * @return The estimated number of primes.
+     */
+    public static long estimateCount(long low, long high) {
+        long from = Math.max(low, 2);
+        if (from > high) {
+            return 0;
+        }
+        return (long) (1.1 * ((double) high - from + 1) / Math.max(1, Math.log(high) - 1.1)) + 16;
     }
 
     /**
      * Gets the result of the prime number calculation.
      *
-     * @return A list of prime numbers within the specified range.
+     * @return The prime numbers within the specified range in ascending order,
+     * as a `long[]`.
      */
     @Override
     public Object getResult() {
         return result;
     }
 
+    /**
+     * @return the lower bound of the range
+     */
+    public long getLow() {
+        return low;
+    }
+
+    /**
+     * @return the upper bound of the range
+     */
+    public long getHigh() {
+        return high;
+    }
+
+    /**
+     * Writes the range and the prime numbers found, each as the distance to
+     * the one before.
+     *
+     * @param out The output to write to.
+     * @throws IOException If the task cannot be written.
+     */
+    @Override
+    public void writeTask(DataOutput out) throws IOException {
+        MessageCodec.writeVarLong(out, low);
+        MessageCodec.writeVarLong(out, high);
+        MessageCodec.writeVarLong(out, result == null ? -1 : result.length);
+        if (result != null) {
+            long previous = 0;
+            for (long prime : result) {
+                MessageCodec.writeVarLong(out, prime - previous);
+                previous = prime;
+            }
+        }
+    }
+
+    /**
+     * Reads the range and the prime numbers found.
+     *
+     * @param in The input to read from.
+     * @throws IOException If the task cannot be read.
+     */
+    @Override
+    public void readTask(DataInput in) throws IOException {
+        low = MessageCodec.readVarLong(in);
+        high = MessageCodec.readVarLong(in);
+        long count = MessageCodec.readVarLong(in);
+        if (count < 0) {
+            result = null;
+            return;
+        }
+        // Grow with the data read rather than trusting the count.
+        long[] primes = new long[(int) Math.min(count, 1024)];
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == primes.length) {
+                primes = Arrays.copyOf(primes, (int) Math.min(count, 2L * primes.length));
+            }
+            previous += MessageCodec.readVarLong(in);
+            primes[i] = previous;
+        }
+        result = primes;
+    }
+
 }
@@ -0,0 +1,315 @@
+package contract;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The `CalculateSparsePrimes` class represents a task for calculating the
+ * prime numbers within a narrow range far out on the number line, where
+ * sieving with all primes up to the square root of the upper bound costs
+ * more than testing the few candidates one by one.
+ *
+ * <p>
+ * The range is first sieved, one segment at a time, with the odd primes below
+ * `FILTER_BOUND`, which leaves about one number in ten. Every number left that
+ * is too large to be prime by the filter alone is tested with the
+ * Miller-Rabin test on the bases 2, 325, 9375, 28178, 450775, 9780504 and
+ * 1795265022, which is exact for every 64-bit number. The modular arithmetic
+ * of the test uses Montgomery multiplication, so it needs no division.
+ *
+ * <p>
+ * The task is self-contained, as a worker only receives this class file. The
+ * result has the same form as that of `CalculatePrimes`.
+ *
+ */
+public class CalculateSparsePrimes implements CompactTask, Serializable {
+
+    /**
+     * bound of the small primes the range is sieved with before testing
+     */
+    public static final int FILTER_BOUND = 1 << 16;
+
+    /**
+     * odd numbers covered by one segment of the filter: 32 KB of bits
+     */
+    private static final int SEGMENT_BITS = 32 * 1024 * 8;
+
+    /**
+     * bases for which the Miller-Rabin test is exact below 2^64
+     */
+    private static final long[] BASES = {2, 325, 9375, 28178, 450775, 9780504, 1795265022};
+
+    private static final int[] FILTER_PRIMES = oddPrimesBelow(FILTER_BOUND);
+
+    private long low;
+    private long high;
+    private long[] result;
+
+    /**
+     * Constructs a new `CalculateSparsePrimes` instance to be read by the
+     * `MessageCodec`.
+     */
+    public CalculateSparsePrimes() {
+    }
+
+    /**
+     * Constructs a new `CalculateSparsePrimes` instance for calculating prime
+     * numbers within the specified range.
+     *
+     * @param low The lower bound of the range.
+     * @param high The upper bound of the range.
+     */
+    public CalculateSparsePrimes(long low, long high) {
+        this.low = low;
+        this.high = high;
+    }
+
+    /**
+     * Executes the prime number calculation for the specified range and stores
+     * the result.
+     */
+    @Override
+    public void executeTask() {
+        long from = Math.max(low, 2);
+        if (from > high) {
+            result = new long[0];
+            return;
+        }
+        long[] primes = new long[16];
+        int count = 0;
+        if (from == 2) {
+            primes[count++] = 2;
+            from = 3;
+        }
+        from |= 1;
+        if (from > high) {
+            result = Arrays.copyOf(primes, count);
+            return;
+        }
+        long[] segment = new long[SEGMENT_BITS / 64];
+        for (long start = from;; start += 2L * SEGMENT_BITS) {
+            // Written so as not to overflow next to Long.MAX_VALUE.
+            long end = high - start < 2L * SEGMENT_BITS ? high : start + 2L * SEGMENT_BITS - 1;
+            int bits = (int) ((end - start) / 2) + 1;
+            Arrays.fill(segment, 0);
+            for (int p : FILTER_PRIMES) {
+                if ((long) p * p > end) {
+                    break;
+                }
+                // First odd multiple of p in the segment, but not p itself.
+                long first = start + (p - start % p) % p;
+                if ((first & 1) == 0) {
+                    first += p;
+                }
+                if (first == p) {
+                    first += 2L * p;
+                }
+                if (first < 0 || first > end) {
+                    continue;
+                }
+                for (int bit = (int) ((first - start) >>> 1); bit < bits; bit += p) {
+                    segment[bit >>> 6] |= 1L << bit;
+                }
+            }
+            for (int word = 0; word * 64 < bits; word++) {
+                long candidates = ~segment[word];
+                if (word * 64 + 64 > bits) {
+                    candidates &= -1L >>> (64 - (bits - word * 64));
+                }
+                while (candidates != 0) {
+                    long n = start + 2L * (word * 64 + Long.numberOfTrailingZeros(candidates));
+                    candidates &= candidates - 1;
+                    // Below FILTER_BOUND^2 the filter has removed every composite.
+                    if (n < (long) FILTER_BOUND * FILTER_BOUND || isPrime(n)) {
+                        if (count == primes.length) {
+                            primes = Arrays.copyOf(primes, count + (count >> 1) + 16);
+                        }
+                        primes[count++] = n;
+                    }
+                }
+            }
+            if (end == high) {
+                break;
+            }
+        }
+        result = Arrays.copyOf(primes, count);
+    }
+
+    /**
+     * Tests an odd number with the deterministic Miller-Rabin test.
+     *
+     * @param n The odd number to test, greater than 3.
+     * @return `true` if the number is prime; otherwise, `false`.
+     */
+    static boolean isPrime(long n) {
+        // -n^-1 mod 2^64, by Newton's iteration; each step doubles the
+        // number of correct bits, starting from the three of n itself.
+        long inverse = n;
+        for (int i = 0; i < 5; i++) {
+            inverse *= 2 - n * inverse;
+        }
+        long nPrime = -inverse;
+        // R mod n and R^2 mod n for R = 2^64.
+        long one = Long.remainderUnsigned(-n, n);
+        long rSquared = one;
+        for (int i = 0; i < 64; i++) {
+            rSquared <<= 1;
+            if (Long.compareUnsigned(rSquared, n) >= 0) {
+                rSquared -= n;
+            }
+        }
+        long minusOne = n - one;
+        int shift = Long.numberOfTrailingZeros(n - 1);
+        long d = (n - 1) >>> shift;
+        nextBase:
+        for (long base : BASES) {
+            long a = base % n;
+            if (a == 0) {
+                continue;
+            }
+            long x = power(montgomeryMultiply(a, rSquared, n, nPrime), d, one, n, nPrime);
+            if (x == one || x == minusOne) {
+                continue;
+            }
+            for (int i = 1; i < shift; i++) {
+                x = montgomeryMultiply(x, x, n, nPrime);
+                if (x == minusOne) {
+                    continue nextBase;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Raises a number in Montgomery form to a power.
+     */
+    private static long power(long base, long exponent, long one, long n, long nPrime) {
+        long result = one;
+        while (exponent != 0) {
+            if ((exponent & 1) != 0) {
+                result = montgomeryMultiply(result, base, n, nPrime);
+            }
+            base = montgomeryMultiply(base, base, n, nPrime);
+            exponent >>>= 1;
+        }
+        return result;
+    }
+
+    /**
+     * Multiplies two numbers in Montgomery form: a * b / 2^64 mod n.
+     *
+     * @param a The first factor, less than n.
+     * @param b The second factor, less than n.
+     * @param n The odd modulus, less than 2^63.
+     * @param nPrime -n^-1 mod 2^64.
+     * @return The product in Montgomery form, less than n.
+     */
+    private static long montgomeryMultiply(long a, long b, long n, long nPrime) {
+        long low = a * b;
+        long high = Math.multiplyHigh(a, b);
+        long m = low * nPrime;
+        // The high word of m * n unsigned; m may have its top bit set. The
+        // low words of a * b and m * n add up to 0 mod 2^64 with a carry
+        // unless both are 0.
+        long t = high + Math.multiplyHigh(m, n) + (m >> 63 & n) + (low != 0 ? 1 : 0);
+        return Long.compareUnsigned(t, n) >= 0 ? t - n : t;
+    }
+
+    /**
+     * Finds the odd primes below a bound with a sieve of the odd numbers.
+     */
+    private static int[] oddPrimesBelow(int bound) {
+        boolean[] composite = new boolean[bound];
+        int[] primes = new int[bound / 2];
+        int count = 0;
+        for (int i = 3; i < bound; i += 2) {
+            if (!composite[i]) {
+                primes[count++] = i;
+                for (long j = (long) i * i; j < bound; j += 2L * i) {
+                    composite[(int) j] = true;
+                }
+            }
+        }
+        return Arrays.copyOf(primes, count);
+    }
+
+    /**
+     * Gets the result of the prime number calculation.
+     *
+     * @return The prime numbers within the specified range in ascending order,
+     * as a `long[]`.
+     */
+    @Override
+    public Object getResult() {
+        return result;
+    }
+
+    /**
+     * @return the lower bound of the range
+     */
+    public long getLow() {
+        return low;
+    }
+
+    /**
+     * @return the upper bound of the range
+     */
+    public long getHigh() {
+        return high;
+    }
+
+    /**
+     * Writes the range and the prime numbers found, each as the distance to
+     * the one before.
+     *
+     * @param out The output to write to.
+     * @throws IOException If the task cannot be written.
+     */
+    @Override
+    public void writeTask(DataOutput out) throws IOException {
+        MessageCodec.writeVarLong(out, low);
+        MessageCodec.writeVarLong(out, high);
+        MessageCodec.writeVarLong(out, result == null ? -1 : result.length);
+        if (result != null) {
+            long previous = 0;
+            for (long prime : result) {
+                MessageCodec.writeVarLong(out, prime - previous);
+                previous = prime;
+            }
+        }
+    }
+
+    /**
+     * Reads the range and the prime numbers found.
+     *
+     * @param in The input to read from.
+     * @throws IOException If the task cannot be read.
+     */
+    @Override
+    public void readTask(DataInput in) throws IOException {
+        low = MessageCodec.readVarLong(in);
+        high = MessageCodec.readVarLong(in);
+        long count = MessageCodec.readVarLong(in);
+        if (count < 0) {
+            result = null;
+            return;
+        }
+        // Grow with the data read rather than trusting the count.
+        long[] primes = new long[(int) Math.min(count, 1024)];
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == primes.length) {
+                primes = Arrays.copyOf(primes, (int) Math.min(count, 2L * primes.length));
+            }
+            previous += MessageCodec.readVarLong(in);
+            primes[i] = previous;
+        }
+        result = primes;
+    }
+
+}
@@ -0,0 +1,34 @@
+package contract;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The `CompactTask` interface represents a task that writes its own state for
+ * the `MessageCodec`, so that it is sent without Java serialization. Only the
+ * class name and the fields written by the task go over the wire.
+ *
+ * <p>
+ * An implementation needs a public constructor without arguments; the codec
+ * creates the task with it and then calls `readTask`.
+ *
+ */
+public interface CompactTask extends Task {
+
+    /**
+     * Writes the parameters and the result of the task.
+     *
+     * @param out The output to write to.
+     * @throws IOException If the task cannot be written.
+     */
+    public void writeTask(DataOutput out) throws IOException;
+
+    /**
+     * Reads the parameters and the result written by `writeTask`.
+     *
+     * @param in The input to read from.
+     * @throws IOException If the task cannot be read.
+     */
+    public void readTask(DataInput in) throws IOException;
+}
@@ -0,0 +1,131 @@
+package master;
+
+import java.lang.management.ManagementFactory;
+import java.security.GeneralSecurityException;
+import java.util.Random;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import security.SecurityUtil;
+
+/**
+ * The `CipherBenchmark` class measures the latency and the heap allocated per
+ * message of encrypting and decrypting a message with the session key, for
+ * payloads of 1 KB, 64 KB and 1 MB. It compares looking up a new `Cipher`
+ * for every message, as `SecurityUtil` used to, with the per-thread ciphers
+ * `SecurityUtil` reuses now, and does the same for generating session keys.
+ * The heap allocated is taken from the `ThreadMXBean` and includes the
+ * ciphertext and plaintext themselves.
+ *
+ * <pre>
+ * java -cp dist/Master.jar master.CipherBenchmark 256
+ * </pre>
+ *
+ */
+public class CipherBenchmark {
+
+    private static final int[] PAYLOAD_SIZES = {1024, 64 * 1024, 1024 * 1024};
+
+    private static final int KEYS = 100000;
+
+    private static volatile Object sink;
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Encrypts and decrypts a message with ciphers looked up for the message.
+     */
+    private static byte[] roundTripWithNewCiphers(byte[] message, SecretKey sessionKey) throws GeneralSecurityException {
+        Cipher encryptor = Cipher.getInstance("AES");
+        encryptor.init(Cipher.ENCRYPT_MODE, sessionKey);
+        byte[] cipherText = encryptor.doFinal(message);
+        Cipher decryptor = Cipher.getInstance("AES");
+        decryptor.init(Cipher.DECRYPT_MODE, sessionKey);
+        return decryptor.doFinal(cipherText);
+    }
+
+    private static byte[] roundTripWithReusedCiphers(byte[] message, SecretKey sessionKey) {
+        return SecurityUtil.SymDecryptBytes(SecurityUtil.SymEncryptBytes(message, sessionKey), sessionKey);
+    }
+
+    private static SecretKey newKeyWithNewGenerator() throws GeneralSecurityException {
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(128);
+        return keyGenerator.generateKey();
+    }
+
+    private static String label(int size) {
+        return size >= 1024 * 1024 ? size / (1024 * 1024) + " MB" : size / 1024 + " KB";
+    }
+
+    private static void print(String label, long elapsed, long allocated, int count) {
+        System.out.printf("%-28s%10.2f us/op %12d bytes/op%n", label, elapsed / 1e3 / count, allocated / count);
+    }
+
+    /**
+     * @param args the command line arguments: optional MB encrypted per
+     * payload size and path
+     * @throws GeneralSecurityException If a cipher is not available.
+     */
+    public static void main(String[] args) throws GeneralSecurityException {
+        long volume = (args.length > 0 ? Long.parseLong(args[0]) : 256) << 20;
+        SecretKey sessionKey = SecurityUtil.SecretKeyGen();
+
+        for (int size : PAYLOAD_SIZES) {
+            byte[] message = new byte[size];
+            new Random(size).nextBytes(message);
+            int count = (int) Math.max(200, volume / size);
+            for (int round = 0; round < 2; round++) {
+                // The first round warms up both paths.
+                long start = System.nanoTime();
+                long before = allocatedBytes();
+                for (int i = 0; i < count; i++) {
+                    sink = roundTripWithNewCiphers(message, sessionKey);
+                }
+                long allocated = allocatedBytes() - before;
+                long elapsed = System.nanoTime() - start;
+                if (round == 1) {
+                    print(label(size) + ", new ciphers", elapsed, allocated, count);
+                }
+
+                start = System.nanoTime();
+                before = allocatedBytes();
+                for (int i = 0; i < count; i++) {
+                    sink = roundTripWithReusedCiphers(message, sessionKey);
+                }
+                allocated = allocatedBytes() - before;
+                elapsed = System.nanoTime() - start;
+                if (round == 1) {
+                    print(label(size) + ", reused ciphers", elapsed, allocated, count);
+                }
+            }
+        }
+
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            long before = allocatedBytes();
+            for (int i = 0; i < KEYS; i++) {
+                sink = newKeyWithNewGenerator();
+            }
+            long allocated = allocatedBytes() - before;
+            long elapsed = System.nanoTime() - start;
+            if (round == 1) {
+                print("session key, new generator", elapsed, allocated, KEYS);
+            }
+
+            start = System.nanoTime();
+            before = allocatedBytes();
+            for (int i = 0; i < KEYS; i++) {
+                sink = SecurityUtil.SecretKeyGen();
+            }
+            allocated = allocatedBytes() - before;
+            elapsed = System.nanoTime() - start;
+            if (round == 1) {
+                print("session key, reused", elapsed, allocated, KEYS);
+            }
+        }
+    }
+}
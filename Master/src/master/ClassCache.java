@@ -0,0 +1,196 @@
+package master;
+
+import contract.CFile;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import security.SealedArtifact;
+
+/**
+ * The `ClassCache` class keeps the task class files sent to the workers in
+ * memory, so that delivering a class is a lookup instead of a file read.
+ *
+ * <p>
+ * Every class file is read once and stored together with the SHA-256 hash of
+ * its content, under which it can also be looked up. Like the `KeyCache`, an
+ * entry remembers the modification time and size of its file and is read
+ * again once they change, so a rebuilt task class is picked up without a
+ * restart. The cache holds a bounded number of files and evicts the least
+ * recently used one first.
+ *
+ * <p>
+ * A class file is also encrypted once when it is read, as a
+ * `SealedArtifact`, so sending it to a worker only encrypts its content key
+ * with the session key of that worker.
+ *
+ */
+class ClassCache {
+
+    /**
+     * default number of class files kept in memory
+     */
+    static final int DEFAULT_MAX_ENTRIES = 256;
+
+    /**
+     * minimum time in milliseconds between two checks of the same class file
+     */
+    static final long CHECK_INTERVAL = 1000;
+
+    private static final ClassCache SHARED = new ClassCache(DEFAULT_MAX_ENTRIES);
+
+    private final LinkedHashMap<String, Artifact> byPath;
+    private final Map<String, Artifact> byHash = new HashMap<>();
+
+    /**
+     * Constructs a new `ClassCache` instance.
+     *
+     * @param maxEntries The maximum number of class files kept in memory.
+     */
+    ClassCache(int maxEntries) {
+        this.byPath = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Artifact> eldest) {
+                if (size() > maxEntries) {
+                    byHash.remove(eldest.getValue().getHash(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets the cache shared by the whole process.
+     *
+     * @return The shared class cache.
+     */
+    static ClassCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Gets a class file, reading it only if it is not cached yet or has
+     * changed since it was read.
+     *
+     * @param file The class file.
+     * @return The cached class file.
+     * @throws IOException If the file cannot be read.
+     */
+    Artifact get(File file) throws IOException {
+        String path = file.getPath();
+        long now = System.currentTimeMillis();
+        Artifact artifact;
+        synchronized (this) {
+            artifact = byPath.get(path);
+        }
+        if (artifact != null) {
+            if (now - artifact.checked < CHECK_INTERVAL) {
+                return artifact;
+            }
+            if (file.lastModified() == artifact.lastModified && file.length() == artifact.length) {
+                artifact.checked = now;
+                return artifact;
+            }
+        }
+
+        // Not cached or changed on disk: read the file again.
+        long lastModified = file.lastModified();
+        long length = file.length();
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        String hash = hash(bytes);
+        CFile cFile = new CFile(path, bytes, hash);
+        Artifact loaded = new Artifact(cFile, SealedArtifact.seal(cFile), new CFile(path, null, hash), lastModified, length, now);
+        synchronized (this) {
+            Artifact replaced = byPath.put(path, loaded);
+            if (replaced != null) {
+                byHash.remove(replaced.getHash(), replaced);
+            }
+            byHash.put(loaded.getHash(), loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Gets a cached class file by the hash of its content.
+     *
+     * @param hash The SHA-256 hash of the content in hexadecimal.
+     * @return The cached class file, or null if none has this hash.
+     */
+    synchronized Artifact getByHash(String hash) {
+        return byHash.get(hash);
+    }
+
+    /**
+     * Computes the hash a class file is addressed by.
+     *
+     * @param bytes The content of the class file.
+     * @return The SHA-256 hash of the content in hexadecimal.
+     */
+    static String hash(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException ex) {
+            System.out.println("Exception in hash(): " + ex.getMessage());
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * A cached class file together with its hash and the state of its file
+     * when it was read. The `CFile`s are shared by all workers and must not
+     * be modified.
+     */
+    static final class Artifact {
+
+        private final CFile file;
+        private final SealedArtifact sealed;
+        private final CFile reference;
+        private final long lastModified;
+        private final long length;
+        private volatile long checked;
+
+        Artifact(CFile file, SealedArtifact sealed, CFile reference, long lastModified, long length, long checked) {
+            this.file = file;
+            this.sealed = sealed;
+            this.reference = reference;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.checked = checked;
+        }
+
+        /**
+         * @return the class file as it is sent to a worker
+         */
+        CFile getFile() {
+            return file;
+        }
+
+        /**
+         * @return the class file encrypted once for all workers
+         */
+        SealedArtifact getSealed() {
+            return sealed;
+        }
+
+        /**
+         * @return the class file without its content, sent to a worker that
+         * already holds it
+         */
+        CFile getReference() {
+            return reference;
+        }
+
+        /**
+         * @return the SHA-256 hash of the content in hexadecimal
+         */
+        String getHash() {
+            return file.getFhash();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package master;
+
+import contract.CFile;
+import contract.CSAuthenticator;
+import contract.CalculateBatchGCD;
+import contract.CalculateGCD;
+import contract.CalculatePi;
+import contract.CalculatePrimes;
+import contract.MessageCodec;
+import contract.Task;
+import contract.TaskBatch;
+import contract.TaskObject;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import security.MessageCompression;
+import security.SecurityUtil;
+
+/**
+ * The `CodecBenchmark` class compares the `MessageCodec` with Java
+ * serialization for every kind of message master and worker exchange. It
+ * prints the payload size and the encode and decode time per message, and
+ * the same for the codec followed by `MessageCompression`.
+ *
+ * <pre>
+ * java -cp dist/Master.jar master.CodecBenchmark 200000
+ * </pre>
+ *
+ */
+public class CodecBenchmark {
+
+    private static volatile Object sink;
+
+    private static TaskObject taskObject(int taskID, Task task, boolean done) {
+        TaskObject taskObject = new TaskObject();
+        taskObject.setTaskID(taskID);
+        taskObject.setTObject(task);
+        if (done) {
+            task.executeTask();
+            taskObject.setCredit(10);
+        }
+        return taskObject;
+    }
+
+    private static Map<String, Object> messages() {
+        Map<String, Object> messages = new LinkedHashMap<>();
+        messages.put("String (class name)", "./build/classes/contract/CalculateGCD.class");
+        TaskObject request = new TaskObject();
+        request.setTaskID(3);
+        messages.put("TaskObject request", request);
+        messages.put("TaskObject GCD", taskObject(3, new CalculateGCD(2147483646L, 987654321L), false));
+        messages.put("TaskObject GCD + result", taskObject(3, new CalculateGCD(2147483646L, 987654321L), true));
+        messages.put("TaskObject Pi(50) + result", taskObject(1, new CalculatePi(50), true));
+        messages.put("TaskObject Primes(1..1000) + result", taskObject(2, new CalculatePrimes(1, 1000), true));
+        messages.put("TaskObject Pi(2000) + result", taskObject(1, new CalculatePi(2000), true));
+        TaskBatch batch = new TaskBatch(3, 16);
+        for (int i = 0; i < 16; i++) {
+            batch.getTaskObjects().add(taskObject(3, new CalculateGCD(600851475143L + i, 1234567890L), true));
+        }
+        messages.put("TaskBatch 16 x GCD + result", batch);
+        messages.put("TaskObject GCD batch(1000) + result", taskObject(6, TaskType.batchGCDTask(1000, 1, false), true));
+        messages.put("TaskList", TaskRegistry.defaults().getTaskList());
+        messages.put("CFile (CalculatePi.class)", new CFile("./build/classes/contract/CalculatePi.class", classBytes("/contract/CalculatePi.class")));
+        CSAuthenticator authenticator = new CSAuthenticator("Stephen Smith", SecurityUtil.RandomAlphaNumericString(344),
+                SecurityUtil.RandomAlphaNumericString(344), null);
+        authenticator.setCipherSuite("AES/GCM");
+        messages.put("CSAuthenticator", authenticator);
+        return messages;
+    }
+
+    private static byte[] classBytes(String resource) {
+        try (InputStream in = CodecBenchmark.class.getResourceAsStream(resource)) {
+            return in.readAllBytes();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static byte[] compress(MessageCompression compression, Object message) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            compression.write(message, out);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteArray();
+    }
+
+    private static double nanosPerOp(Runnable operation, int count) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            operation.run();
+        }
+        return (double) (System.nanoTime() - start) / count;
+    }
+
+    /**
+     * @param args the command line arguments: optional number of operations
+     * per measurement
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        MessageCompression compression = new MessageCompression(MessageCompression.DEFAULT_THRESHOLD);
+        System.out.printf("%-36s %9s %9s %9s %11s %11s %11s %11s %11s %11s%n", "message", "java B", "codec B", "deflate B",
+                "java enc", "codec enc", "defl enc", "java dec", "codec dec", "defl dec");
+        for (Map.Entry<String, Object> entry : messages().entrySet()) {
+            Object message = entry.getValue();
+            byte[] serialized = SecurityUtil.convertObjectToBytes(message);
+            byte[] encoded = MessageCodec.encode(message);
+            byte[] deflated = compress(compression, message);
+
+            // Warm up both paths before measuring.
+            for (int i = 0; i < count / 4; i++) {
+                sink = SecurityUtil.convertObjectToBytes(message);
+                sink = MessageCodec.encode(message);
+                sink = SecurityUtil.convertBytesToObject(serialized);
+                sink = MessageCodec.decode(encoded);
+                sink = compress(compression, message);
+                sink = MessageCodec.decode(deflated);
+            }
+            double javaEncode = nanosPerOp(() -> sink = SecurityUtil.convertObjectToBytes(message), count);
+            double codecEncode = nanosPerOp(() -> sink = MessageCodec.encode(message), count);
+            double javaDecode = nanosPerOp(() -> sink = SecurityUtil.convertBytesToObject(serialized), count);
+            double codecDecode = nanosPerOp(() -> sink = MessageCodec.decode(encoded), count);
+            double deflateEncode = nanosPerOp(() -> sink = compress(compression, message), count);
+            double deflateDecode = nanosPerOp(() -> sink = MessageCodec.decode(deflated), count);
+            System.out.printf("%-36s %9d %9d %9d %8.0f ns %8.0f ns %8.0f ns %8.0f ns %8.0f ns %8.0f ns%n", entry.getKey(),
+                    serialized.length, encoded.length, deflated.length, javaEncode, codecEncode, deflateEncode,
+                    javaDecode, codecDecode, deflateDecode);
+        }
+    }
+}
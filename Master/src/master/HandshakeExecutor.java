@@ -0,0 +1,153 @@
+package master;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import security.RecordChannel;
+import security.RecordChannel.Record;
+
+/**
+ * The `HandshakeExecutor` class runs the authentication handshakes of the
+ * master on a small pool of its own. The RSA work of a reconnect storm is
+ * thereby bounded to these threads, while the data requests of workers that
+ * are already authenticated keep being served by the other threads.
+ *
+ * <p>
+ * Handshakes wait in a bounded queue. When it is full a handshake is
+ * rejected at once, and the worker is told to retry after `RETRY_AFTER`
+ * milliseconds. The queue depth, the number of handshakes and their latency
+ * are published as the MBean `master:type=HandshakeExecutor`, so they can be
+ * watched with jconsole when sizing the pool.
+ *
+ */
+class HandshakeExecutor implements HandshakeExecutorMBean {
+
+    /**
+     * default number of handshakes waiting for a thread
+     */
+    static final int DEFAULT_QUEUE_LIMIT = 256;
+
+    /**
+     * time in milliseconds a rejected worker is asked to wait before it
+     * retries its handshake
+     */
+    static final long RETRY_AFTER = 1000;
+
+    private final ThreadPoolExecutor pool;
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalLatency = new LongAdder();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    /**
+     * Constructs a new `HandshakeExecutor` instance.
+     *
+     * @param threads The number of threads performing handshakes.
+     * @param queueLimit The number of handshakes that may wait for a thread.
+     */
+    HandshakeExecutor(int threads, int queueLimit) {
+        if (threads < 1 || queueLimit < 1) {
+            throw new IllegalArgumentException("threads and queueLimit must be positive");
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueLimit),
+                task -> new Thread(task, "master-handshake-" + threadNumber.getAndIncrement()));
+    }
+
+    /**
+     * Creates the executor configured with -Dmaster.handshakeThreads
+     * (default: half the processors) and -Dmaster.handshakeQueue, and
+     * publishes its statistics.
+     *
+     * @return The handshake executor.
+     */
+    static HandshakeExecutor create() {
+        int threads = Integer.getInteger("master.handshakeThreads", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        int queueLimit = Integer.getInteger("master.handshakeQueue", DEFAULT_QUEUE_LIMIT);
+        HandshakeExecutor executor = new HandshakeExecutor(threads, queueLimit);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(executor, new ObjectName("master:type=HandshakeExecutor"));
+        } catch (JMException ex) {
+            System.out.println("Exception in create(): " + ex.getMessage());
+        }
+        return executor;
+    }
+
+    /**
+     * Queues a handshake.
+     *
+     * @param handshake The handshake to perform.
+     * @return The future completion of the handshake, or null if the queue
+     * is full and the handshake was rejected.
+     */
+    Future<?> submit(Runnable handshake) {
+        long queued = System.nanoTime();
+        try {
+            return pool.submit(() -> {
+                try {
+                    handshake.run();
+                } finally {
+                    long latency = System.nanoTime() - queued;
+                    completed.increment();
+                    totalLatency.add(latency);
+                    maxLatency.accumulateAndGet(latency, Math::max);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            rejected.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Creates the alert answering a rejected handshake.
+     *
+     * @param requestId The request ID of the handshake.
+     * @return The alert asking the worker to retry after `RETRY_AFTER`
+     * milliseconds.
+     */
+    static Record retryAlert(int requestId) {
+        return new Record(RecordChannel.ALERT, requestId, (RecordChannel.RETRY_AFTER + RETRY_AFTER).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return pool.getQueue().size();
+    }
+
+    @Override
+    public int getActiveHandshakes() {
+        return pool.getActiveCount();
+    }
+
+    @Override
+    public long getCompletedHandshakes() {
+        return completed.sum();
+    }
+
+    @Override
+    public long getRejectedHandshakes() {
+        return rejected.sum();
+    }
+
+    @Override
+    public double getAverageLatencyMillis() {
+        long count = completed.sum();
+        return count == 0 ? 0 : totalLatency.sum() / 1e6 / count;
+    }
+
+    @Override
+    public double getMaxLatencyMillis() {
+        return maxLatency.get() / 1e6;
+    }
+}
@@ -0,0 +1,51 @@
+package master;
+
+/**
+ * The `HandshakeExecutorMBean` interface lists the statistics of the
+ * `HandshakeExecutor` published over JMX.
+ *
+ */
+public interface HandshakeExecutorMBean {
+
+    /**
+     * Gets the number of handshakes waiting for a thread.
+     *
+     * @return The queue depth.
+     */
+    int getQueueDepth();
+
+    /**
+     * Gets the number of handshakes being performed.
+     *
+     * @return The number of busy handshake threads.
+     */
+    int getActiveHandshakes();
+
+    /**
+     * Gets the number of handshakes performed since the start.
+     *
+     * @return The number of completed handshakes.
+     */
+    long getCompletedHandshakes();
+
+    /**
+     * Gets the number of handshakes rejected because the queue was full.
+     *
+     * @return The number of rejected handshakes.
+     */
+    long getRejectedHandshakes();
+
+    /**
+     * Gets the average time from queuing a handshake to its completion.
+     *
+     * @return The average latency in milliseconds.
+     */
+    double getAverageLatencyMillis();
+
+    /**
+     * Gets the longest time from queuing a handshake to its completion.
+     *
+     * @return The maximum latency in milliseconds.
+     */
+    double getMaxLatencyMillis();
+}
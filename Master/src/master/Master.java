@@ -1,29 +1,17 @@
 package master;
 
-import contract.CFile;
-import contract.CSAuthenticator;
-import contract.CalculateGCD;
-import contract.CalculatePi;
-import contract.CalculatePrimes;
-import contract.Task;
-import contract.TaskList;
-import contract.TaskObject;
-import java.io.BufferedInputStream;
-import java.io.DataInputStream;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.security.PrivateKey;
-import java.security.PublicKey;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import javax.crypto.SecretKey;
-import security.SecurityUtil;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import security.RecordChannel;
+import security.RecordChannel.Record;
+import security.SessionTickets;
 
 /**
  * The `Master` class represents a server that coordinates and manages
@@ -37,8 +25,62 @@ import security.SecurityUtil;
  */
 public class Master {
 
+    /**
+     * default limit of concurrently served worker sessions
+     */
+    public static final int DEFAULT_MAX_SESSIONS = 1000;
+
+    /**
+     * default length of the pending connection queue of the server socket
+     */
+    public static final int DEFAULT_BACKLOG = 128;
+
     private ServerSocket master;
     private final int port;
+    private final int backlog;
+
+    /**
+     * permits for concurrently served worker sessions; a permit is taken
+     * before a connection is accepted and returned when its session ends
+     */
+    private final Semaphore sessionPermits;
+
+    /**
+     * threads running the worker handlers; idle threads are reclaimed so a
+     * reconnect burst does not leave thousands of parked threads behind
+     */
+    private final ExecutorService workerPool = Executors.newCachedThreadPool();
+
+    /**
+     * requests of one connection read but not yet answered above which the
+     * connection is not read, as `NioMaster` limits its inbox
+     */
+    private static final int MAX_REQUESTS_IN_FLIGHT = 64;
+
+    /**
+     * threads answering the data requests of all workers, so the requests
+     * pipelined on one connection are served concurrently
+     */
+    private final ExecutorService requestPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * threads performing the authentication handshakes, so their RSA work
+     * cannot crowd out the data requests
+     */
+    private final HandshakeExecutor handshakes = HandshakeExecutor.create();
+
+    /**
+     * issuer of the session tickets that let workers reconnect without the
+     * RSA handshake; the lifetime in milliseconds is set with
+     * -Dmaster.ticketLifetime
+     */
+    private final SessionTickets tickets = new SessionTickets(Long.getLong("master.ticketLifetime", SessionTickets.DEFAULT_LIFETIME));
+
+    /**
+     * catalog of the tasks offered to the workers, read from the file named
+     * by -Dmaster.tasks
+     */
+    private final TaskRegistry registry = TaskRegistry.load(System.getProperty("master.tasks", TaskRegistry.DEFAULT_FILE));
 
     /**
      * Constructs a new `Master` instance with the specified port number.
@@ -47,7 +89,28 @@ public class Master {
      * worker connections.
      */
     public Master(int port) {
+        this(port, DEFAULT_MAX_SESSIONS, DEFAULT_BACKLOG);
+    }
+
+    /**
+     * Constructs a new `Master` instance with bounded admission of worker
+     * sessions.
+     *
+     * @param port The port number on which the master server will listen for
+     * worker connections.
+     * @param maxSessions The maximum number of worker sessions served at the
+     * same time. Further connections wait in the accept backlog until a
+     * session ends.
+     * @param backlog The maximum length of the queue of incoming connections
+     * that have not been accepted yet.
+     */
+    public Master(int port, int maxSessions, int backlog) {
+        if (maxSessions < 1 || backlog < 1) {
+            throw new IllegalArgumentException("maxSessions and backlog must be positive");
+        }
         this.port = port;
+        this.backlog = backlog;
+        this.sessionPermits = new Semaphore(maxSessions);
     }
 
     /**
@@ -56,9 +119,10 @@ public class Master {
      */
     public void run() {
         try {
-            master = new ServerSocket(port);
+            master = new ServerSocket(port, backlog);
             System.out.println("------------------------------");
             System.out.println("The Master is listening at port " + port + " for object transfer...");
+            System.out.println("Serving at most " + sessionPermits.availablePermits() + " workers (backlog " + backlog + ").");
             System.out.println("------------------------------");
 
             acceptWorker();
@@ -68,42 +132,35 @@ public class Master {
     }
 
     private void acceptWorker() {
-        TaskList taskList = new TaskList();
-        taskList.setAvailableTasks(
-                new String[]{
-                    "Calculate Pi to 50 decimal digits",
-                    "Calculate Prime from 1-70",
-                    "Calculate GCD of 128 and 76",
-                    "Calculate Pi to 70 decimal digits",
-                    "Calculate Prime from 1-100",
-                    "Calculate GCD of 252 and 24"
-                }
-        );
-        taskList.setTaskClassName(
-                new String[]{
-                    "CalculatePi.class",
-                    "CalculatePrimes.class",
-                    "CalculateGCD.class",
-                    "CalculatePi.class",
-                    "CalculatePrimes.class",
-                    "CalculateGCD.class"
-                }
-        );
         while (true) {
+            // Wait for a free session slot first; until then new connections
+            // stay in the bounded accept backlog of the server socket.
+            sessionPermits.acquireUninterruptibly();
+            Socket socket = null;
             try {
-                Socket socket = master.accept();
-                Thread workerThread = new Thread(new WorkerHandler(socket, taskList));
-                workerThread.start();
+                socket = master.accept();
+                workerPool.execute(new WorkerHandler(socket));
             } catch (IOException ex) {
+                sessionPermits.release();
+            } catch (RejectedExecutionException ex) {
+                sessionPermits.release();
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                }
             }
         }
     }
 
     /**
-     * @param args the command line arguments
+     * @param args the command line arguments: optional port, maximum number
+     * of concurrent worker sessions and accept backlog
      */
     public static void main(String[] args) {
-        Master master = new Master(5001);
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 5001;
+        int maxSessions = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_SESSIONS;
+        int backlog = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_BACKLOG;
+        Master master = new Master(port, maxSessions, backlog);
         master.run();
     }
 
@@ -114,263 +171,80 @@ public class Master {
      * retrieval.
      *
      * <p>
-     * The class provides methods to handle worker authentication, task
-     * distribution, result retrieval, and secure communication.
+     * The handler reads the messages of one worker from its socket and passes
+     * them to a `WorkerSession`, which implements the protocol.
      *
      */
     private class WorkerHandler implements Runnable {
 
         private final Socket workerSocket;
-        private final TaskList taskList;
+        private final WorkerSession session;
 
-        private ObjectInputStream inputStream;
-        private ObjectOutputStream outputStream;
-        private String CONTRACT_PACKAGE_LOCATION = "./build/classes/contract";
-//                "./contract";
-//                "./build/classes/contract";
+        /**
+         * permits for the requests of the worker read but not yet answered;
+         * the socket is not read while none are left, so a worker pipelining
+         * requests cannot queue decrypted messages without limit
+         */
+        private final Semaphore requestPermits = new Semaphore(MAX_REQUESTS_IN_FLIGHT);
 
-        private SecretKey sessionKey;
+        private RecordChannel channel;
 
-        WorkerHandler(Socket workerSocket, TaskList taskList) {
+        WorkerHandler(Socket workerSocket) {
             this.workerSocket = workerSocket;
-            this.taskList = taskList;
-            try {
-                inputStream = new ObjectInputStream(workerSocket.getInputStream());
-                outputStream = new ObjectOutputStream(workerSocket.getOutputStream());
-            } catch (IOException ex) {
-            }
+            this.session = new WorkerSession(registry, tickets);
         }
 
         @Override
         public void run() {
             try {
+                channel = new RecordChannel(workerSocket, true);
                 while (true) {
-                    Object message = inputStream.readObject();
-                    if (message instanceof CSAuthenticator) {
-                        // If the received message is an instance of CSAuthenticator, 
-                        // perform the following actions for mutual authentication.
-                        CSAuthenticator authenticator = (CSAuthenticator) message;
-
-                        // Decrypt the ciphered username using the public key of the user.
-                        String decryptedUsername = decrypt(authenticator.getCipherUserName(), authenticator.getPlainUserName() + "-pub.ser");
-
-                        // Decrypt the verification string using the private key of the server.
-                        String decryptedVerificationString = decrypt(authenticator.getVerficationString(), "CENTRE-pri.ser");
-
-                        // Check if the decrypted username matches the plain username in the authenticator.
-                        if (authenticator.getPlainUserName().equals(decryptedUsername)) {
-
-                            // Mutual authentication is in progress.
-                            System.out.println("The mutual authentication of user " + decryptedUsername + "is progressing!");
-                            System.out.println("The The verification string in cipher text: " + authenticator.getVerficationString());
-                            System.out.println("The The verification string in plain text: " + decryptedVerificationString);
-
-                            // Retrieve the public keys for the user.
-                            HashMap keys = SecurityUtil.ReadinKeys(decryptedUsername + "-pub.ser");
-                            // Generate a session key for secure communication.
-
-                            sessionKey = SecurityUtil.SecretKeyGen();
-
-                            // Encrypt the session key using the user's public key.
-                            String cipheredSessionKey = SecurityUtil.EncryptSessionKey(sessionKey, (PublicKey) keys.get(decryptedUsername));
-
-                            // Create a master authenticator for the server.
-                            CSAuthenticator masterAuthenticator = new CSAuthenticator();
-                            masterAuthenticator.setPlainUserName("CENTRE");
-
-                            // Encrypt the server's username using its private key.
-                            masterAuthenticator.setCipherUserName(encrypt(masterAuthenticator.getPlainUserName(), "CENTRE-pri.ser"));
-
-                            // Encrypt the verification string using the generated session key.
-                            masterAuthenticator.setVerficationString(SecurityUtil.SymEncryptObj(decryptedVerificationString, sessionKey));
-
-                            // Set the session key for the master authenticator.
-                            masterAuthenticator.setSessionKey(cipheredSessionKey);
-
-                            System.out.println("The session Key in plain text: " + SecurityUtil.keytoB64String(sessionKey));
-                            System.out.println("The session Key in cipher text: " + masterAuthenticator.getSessionKey());
-                            System.out.println("The mutual Authentication is done!");
-                            System.out.println("----------------------------------------------");
-
-                            // Send the master authenticator to the client for mutual authentication.
-                            outputStream.writeObject(masterAuthenticator);
-                            outputStream.flush();
+                    Record record = channel.readMessage();
+                    if (record.getType() == RecordChannel.HANDSHAKE) {
+                        // The handshake runs on the handshake executor and is
+                        // answered before the next record is read, so later
+                        // requests find the session key in place.
+                        Future<?> handshake = handshakes.submit(() -> reply(record));
+                        if (handshake == null) {
+                            channel.writeRecord(HandshakeExecutor.retryAlert(record.getRequestId()));
                         } else {
-                            // If the decrypted username doesn't match the plain username,
-                            // respond with an "Invalid Username" message to the client.
-                            outputStream.writeChars("Invalid Username");
-                            outputStream.flush();
+                            handshake.get();
                         }
-                    } else if (message instanceof String) {
-                        // If the received message is a String, handle various actions based on its content.
-
-                        // Decrypt the received message using the session key.
-                        Object input = decryptMessage((String) message, sessionKey);
-                        if (input instanceof TaskList) {
-                            // If the decrypted input is a TaskList, provide the list of available compute-tasks to the worker.
-                            TaskList receivedTaskList = (TaskList) input;
-                            receivedTaskList.setAvailableTasks(taskList.getAvailableTasks());
-                            receivedTaskList.setTaskClassName(taskList.getTaskClassName());
-
-                            // Encrypt the TaskList and send it to the worker.
-                            String encryptedTaskList = encryptMessage(receivedTaskList, sessionKey);
-                            outputStream.writeObject(encryptedTaskList);
-                            System.out.println("The TaskList encrypted String: " + encryptedTaskList);
-                            System.out.println("The list of available compute-tasks has been transferred to a worker.");
-                        } else if (input instanceof String) {
-                            // If the decrypted input is a String, it represents the name of a task file to be transferred.
-                            String msg = (String) input;
-                            File file = new File(CONTRACT_PACKAGE_LOCATION, msg);
-                            // Read the file content and create a CFile object.
-                            BufferedInputStream bis = new BufferedInputStream(new FileInputStream(file));
-                            DataInputStream dis = new DataInputStream(bis);
-                            byte[] mybytearray = new byte[(int) file.length()];
-                            dis.readFully(mybytearray, 0, mybytearray.length);
-                            CFile cfile = new CFile(file.getPath(), mybytearray);
-
-                            // Encrypt the CFile and send it to the worker.
-                            String encryptedCFile = encryptMessage(cfile, sessionKey);
-                            outputStream.writeObject(encryptedCFile);
-                            outputStream.flush();
-
-                            System.out.println("The CFile encrypted String: " + encryptedCFile);
-                            System.out.println("The task: " + msg + " has been transferred to a worker.");
-                        } else if (input instanceof TaskObject) {
-                            // If the decrypted input is a TaskObject, handle task execution and response.
-                            TaskObject taskObj = (TaskObject) input;
-                            if (taskObj.getTObject() == null) {
-                                // If the task object does not contain a task instance, it needs to be initialized.
-
-                                // Get the task based on the task ID.
-                                Task task = getTask(taskObj.getTaskID());
-                                taskObj.setTObject(task);
-
-                                // Encrypt the initialized task object and send it to the worker.
-                                String encryptedTaskObject = encryptMessage(taskObj, sessionKey);
-
-                                outputStream.writeObject(encryptedTaskObject);
-                                outputStream.flush();
-                            } else {
-                                // If the task object already contains a task instance, it represents a completed task.
-
-                                System.out.println("The Task encrypted String: " + message);
-
-                                System.out.println("The task: " + taskList.getTaskClassName()[taskObj.getTaskID()] + " has been performed by the worker, the result is: " + getFormattedResultToPrint(taskObj));
-                                // Determine and assign credit to the worker.
-                                taskObj.setCredit(getCredit(taskObj.getTaskID()));
-                                System.out.println("Award a credit of " + taskObj.getCredit() + " to a worker.");
-
-                                // Encrypt the task object with the credit information and send it to the worker.
-                                String encryptedTaskObject = encryptMessage(taskObj, sessionKey);
-
-                                outputStream.writeObject(encryptedTaskObject);
-                                outputStream.flush();
-                                System.out.println("----------------------------------------------");
+                    } else {
+                        requestPermits.acquire();
+                        requestPool.execute(() -> {
+                            try {
+                                reply(record);
+                            } finally {
+                                requestPermits.release();
                             }
-                        }
+                        });
                     }
                 }
-            } catch (IOException | ClassNotFoundException ex) {
+            } catch (IOException | RuntimeException | InterruptedException | ExecutionException ex) {
             } finally {
                 try {
-                    inputStream.close();
-                    outputStream.close();
                     workerSocket.close();
                 } catch (IOException e) {
                 }
+                sessionPermits.release();
             }
         }
 
-        private String decrypt(String cipherText, String keyFile) {
-            HashMap keys = SecurityUtil.ReadinKeys(keyFile);
-            String decryptedRandomBase64String = null;
-            if (keyFile.contains("pri")) {
-                decryptedRandomBase64String = SecurityUtil.asyDecrypt(cipherText, (PrivateKey) keys.get(keyFile.split("-")[0]));
-            } else {
-                decryptedRandomBase64String = SecurityUtil.asyDecrypt(cipherText, (PublicKey) keys.get(keyFile.split("-")[0]));
-            }
-            return decryptedRandomBase64String;
-        }
-
-        private String encrypt(String username, String keyFile) {
-            HashMap keys = SecurityUtil.ReadinKeys(keyFile);
-            String encryptedRandomBase64String = null;
-            if (keyFile.contains("pri")) {
-                encryptedRandomBase64String = SecurityUtil.asyEncrypt(username, (PrivateKey) keys.get(keyFile.split("-")[0]));
-            } else {
-                encryptedRandomBase64String = SecurityUtil.asyEncrypt(username, (PublicKey) keys.get(keyFile.split("-")[0]));
-            }
-            return encryptedRandomBase64String;
-        }
-
-        private Task getTask(Integer taskID) {
-            return switch (taskID + 1) {
-                case 1 ->
-                    new CalculatePi(50);
-                case 2 ->
-                    new CalculatePrimes(1, 70);
-                case 3 ->
-                    new CalculateGCD(128, 76);
-                case 4 ->
-                    new CalculatePi(70);
-                case 5 ->
-                    new CalculatePrimes(1, 100);
-                case 6 ->
-                    new CalculateGCD(252, 24);
-                default ->
-                    null;
-            };
-        }
-
-        private String getFormattedResultToPrint(TaskObject taskObj) {
-            if (taskObj.getTObject() instanceof CalculatePi) {
-                return taskObj.getTObject().getResult().toString();
-            } else if (taskObj.getTObject() instanceof CalculatePrimes) {
-                List<Integer> result = (ArrayList<Integer>) taskObj.getTObject().getResult();
-                StringBuilder sb = new StringBuilder(String.format("The number of primes is: %d, and they are: ", result.size()));
-                for (int i = 0; i < result.size(); i++) {
-                    sb.append(result.get(i));
-                    if (i < result.size() - 1) {
-                        sb.append(", ");
-                    } else {
-                        sb.append(".");
-                    }
+        /**
+         * Handles one record and writes the reply, which carries the request
+         * ID of the record. Replies may leave in a different order than their
+         * requests arrived.
+         */
+        private void reply(Record record) {
+            try {
+                session.handleRecord(record, channel);
+            } catch (IOException | RuntimeException ex) {
+                try {
+                    workerSocket.close();
+                } catch (IOException e) {
                 }
-                return sb.toString();
-            } else if (taskObj.getTObject() instanceof CalculateGCD) {
-                CalculateGCD gcd = (CalculateGCD) taskObj.getTObject();
-                return String.format("The Greatest Common Divisor of %d and %d is %d", gcd.getFirst(), gcd.getSecond(), gcd.getResult());
             }
-            return "";
-        }
-
-        private Integer getCredit(Integer taskID) {
-            return switch (taskID + 1) {
-                case 1 ->
-                    25;
-                case 2 ->
-                    30;
-                case 3 ->
-                    35;
-                case 4 ->
-                    40;
-                case 5 ->
-                    45;
-                case 6 ->
-                    50;
-                default ->
-                    null;
-            };
-        }
-
-        private Object decryptMessage(String message, SecretKey sessionKey) {
-            byte[] ObjectBytes = SecurityUtil.SymDecrypt((String) message, sessionKey);
-            Object obj = SecurityUtil.convertBytesToObject(ObjectBytes);
-            return obj;
-        }
-
-        private String encryptMessage(Object message, SecretKey sessionKey) {
-            return SecurityUtil.SymEncryptObj(message, sessionKey);
         }
     }
 }
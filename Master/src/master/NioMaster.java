@@ -0,0 +1,625 @@
+package master;
+
+import contract.MessageCodec;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import javax.crypto.SecretKey;
+import security.MessageCompression;
+import security.RecordChannel;
+import security.RecordChannel.Record;
+import security.RecordCipher;
+import security.SealedArtifact;
+import security.SessionChannel;
+import security.SessionTickets;
+
+/**
+ * The `NioMaster` class is an alternative transport for the master server
+ * built on a `Selector` and non-blocking `SocketChannel`s. A small fixed set
+ * of I/O threads reads and writes the sockets of all workers, while a separate
+ * pool decrypts and handles the complete messages. A worker that is busy
+ * computing therefore does not pin any thread on the master. Handshakes run
+ * on a `HandshakeExecutor` of their own.
+ *
+ * <p>
+ * The transport speaks the same record protocol as the blocking `Master`, so
+ * the worker connects to either of them. The protocol itself is implemented by
+ * `WorkerSession`.
+ *
+ * <p>
+ * The memory a peer can make the master hold is bounded: like the `Master`,
+ * the transport serves a limited number of sessions and leaves further
+ * connections in the accept backlog; a record body grows as its bytes arrive
+ * and is limited to a handshake until the session is started; and a
+ * connection is not read while its queue of received records or of replies
+ * waiting to be written is full.
+ *
+ */
+public class NioMaster {
+
+    /**
+     * size of the per-connection buffer the socket is read into
+     */
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * number of free direct buffers each I/O thread keeps for the sealed
+     * records waiting to be written
+     */
+    private static final int POOLED_BUFFERS = 64;
+
+    /**
+     * default limit of concurrently served worker sessions
+     */
+    public static final int DEFAULT_MAX_SESSIONS = 65536;
+
+    /**
+     * received records of a connection waiting to be handled above which the
+     * connection is not read
+     */
+    private static final int MAX_INBOX = 64;
+
+    /**
+     * buffers of a connection waiting to be written above which the
+     * connection is not read
+     */
+    private static final int MAX_WRITE_QUEUE = 256;
+
+    private final int port;
+    private final int backlog;
+
+    /**
+     * permits for concurrently served worker sessions; a permit is taken
+     * before a connection is accepted and returned when it is closed
+     */
+    private final Semaphore sessionPermits;
+    private final IoLoop[] ioLoops;
+    private final ExecutorService messagePool;
+    private final HandshakeExecutor handshakes = HandshakeExecutor.create();
+    /**
+     * issuer of the session tickets that let workers reconnect without the
+     * RSA handshake; the lifetime in milliseconds is set with
+     * -Dmaster.ticketLifetime
+     */
+    private final SessionTickets tickets = new SessionTickets(Long.getLong("master.ticketLifetime", SessionTickets.DEFAULT_LIFETIME));
+
+    /**
+     * catalog of the tasks offered to the workers, read from the file named
+     * by -Dmaster.tasks
+     */
+    private final TaskRegistry registry = TaskRegistry.load(System.getProperty("master.tasks", TaskRegistry.DEFAULT_FILE));
+
+    /**
+     * Constructs a new `NioMaster` instance serving at most
+     * `DEFAULT_MAX_SESSIONS` sessions.
+     *
+     * @param port The port number on which the master server will listen for
+     * worker connections.
+     * @param backlog The maximum length of the queue of incoming connections
+     * that have not been accepted yet.
+     * @param ioThreads The number of threads serving the sockets.
+     * @param poolThreads The number of threads handling complete messages.
+     * @throws IOException If a selector cannot be opened.
+     */
+    public NioMaster(int port, int backlog, int ioThreads, int poolThreads) throws IOException {
+        this(port, DEFAULT_MAX_SESSIONS, backlog, ioThreads, poolThreads);
+    }
+
+    /**
+     * Constructs a new `NioMaster` instance with bounded admission of worker
+     * sessions.
+     *
+     * @param port The port number on which the master server will listen for
+     * worker connections.
+     * @param maxSessions The maximum number of worker sessions served at the
+     * same time. Further connections wait in the accept backlog until a
+     * session ends.
+     * @param backlog The maximum length of the queue of incoming connections
+     * that have not been accepted yet.
+     * @param ioThreads The number of threads serving the sockets.
+     * @param poolThreads The number of threads handling complete messages.
+     * @throws IOException If a selector cannot be opened.
+     */
+    public NioMaster(int port, int maxSessions, int backlog, int ioThreads, int poolThreads) throws IOException {
+        if (ioThreads < 1 || poolThreads < 1) {
+            throw new IllegalArgumentException("ioThreads and poolThreads must be positive");
+        }
+        if (maxSessions < 1 || backlog < 1) {
+            throw new IllegalArgumentException("maxSessions and backlog must be positive");
+        }
+        this.port = port;
+        this.backlog = backlog;
+        this.sessionPermits = new Semaphore(maxSessions);
+        this.ioLoops = new IoLoop[ioThreads];
+        for (int i = 0; i < ioThreads; i++) {
+            ioLoops[i] = new IoLoop();
+        }
+        this.messagePool = Executors.newFixedThreadPool(poolThreads);
+    }
+
+    /**
+     * Starts the I/O threads and accepts worker connections, handing each one
+     * to an I/O thread in turn.
+     */
+    public void run() {
+        for (int i = 0; i < ioLoops.length; i++) {
+            Thread ioThread = new Thread(ioLoops[i], "nio-master-io-" + i);
+            ioThread.start();
+        }
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(port), backlog);
+            System.out.println("------------------------------");
+            System.out.println("The Master is listening at port " + port + " for object transfer (NIO, "
+                    + ioLoops.length + " I/O threads)...");
+            System.out.println("Serving at most " + sessionPermits.availablePermits() + " workers (backlog " + backlog + ").");
+            System.out.println("------------------------------");
+
+            int next = 0;
+            while (true) {
+                // Wait for a free session slot first; until then new connections
+                // stay in the bounded accept backlog of the server socket.
+                sessionPermits.acquireUninterruptibly();
+                SocketChannel channel;
+                try {
+                    channel = server.accept();
+                } catch (IOException ex) {
+                    sessionPermits.release();
+                    throw ex;
+                }
+                try {
+                    channel.configureBlocking(false);
+                    channel.socket().setTcpNoDelay(true);
+                    ioLoops[next].register(channel);
+                    next = (next + 1) % ioLoops.length;
+                } catch (IOException ex) {
+                    sessionPermits.release();
+                    channel.close();
+                }
+            }
+        } catch (IOException i) {
+            System.out.println(i.getMessage());
+        }
+    }
+
+    /**
+     * @param args the command line arguments: optional port, number of I/O
+     * threads, number of message handling threads and maximum number of
+     * concurrent worker sessions
+     * @throws IOException If a selector cannot be opened.
+     */
+    public static void main(String[] args) throws IOException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 5001;
+        int ioThreads = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(1, cores / 2);
+        int poolThreads = args.length > 2 ? Integer.parseInt(args[2]) : cores;
+        int maxSessions = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_MAX_SESSIONS;
+        NioMaster master = new NioMaster(port, maxSessions, Master.DEFAULT_BACKLOG, ioThreads, poolThreads);
+        master.run();
+    }
+
+    /**
+     * One selector thread serving the sockets of a share of the workers.
+     * Changes to the selector made by other threads are queued and applied by
+     * the loop itself.
+     */
+    private class IoLoop implements Runnable {
+
+        private final Selector selector;
+        private final Queue<Runnable> pendingChanges = new ConcurrentLinkedQueue<>();
+        private final ArrayDeque<ByteBuffer> freeBuffers = new ArrayDeque<>(POOLED_BUFFERS);
+
+        IoLoop() throws IOException {
+            this.selector = Selector.open();
+        }
+
+        void register(SocketChannel channel) {
+            execute(() -> {
+                try {
+                    SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                    key.attach(new Connection(this, channel, key));
+                } catch (IOException ex) {
+                    sessionPermits.release();
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                    }
+                }
+            });
+        }
+
+        void execute(Runnable change) {
+            pendingChanges.add(change);
+            selector.wakeup();
+        }
+
+        /**
+         * Copies a sealed record into a direct buffer of the pool, so the
+         * record can be queued while its sealing buffer is reused.
+         */
+        ByteBuffer copyToPooled(ByteBuffer record) {
+            if (record.remaining() > RecordCipher.MAX_SEALED_LENGTH) {
+                return ByteBuffer.allocate(record.remaining()).put(record).flip();
+            }
+            ByteBuffer buffer;
+            synchronized (freeBuffers) {
+                buffer = freeBuffers.poll();
+            }
+            if (buffer == null) {
+                buffer = ByteBuffer.allocateDirect(RecordCipher.MAX_SEALED_LENGTH);
+            }
+            buffer.clear();
+            return buffer.put(record).flip();
+        }
+
+        /**
+         * Returns a written buffer to the pool if it came from there.
+         */
+        void recycle(ByteBuffer buffer) {
+            if (buffer.isDirect() && !buffer.isReadOnly() && buffer.capacity() == RecordCipher.MAX_SEALED_LENGTH) {
+                synchronized (freeBuffers) {
+                    if (freeBuffers.size() < POOLED_BUFFERS) {
+                        freeBuffers.add(buffer);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+                    Runnable change;
+                    while ((change = pendingChanges.poll()) != null) {
+                        change.run();
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                connection.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.write();
+                            }
+                        } catch (IOException ex) {
+                            connection.close();
+                        }
+                    }
+                } catch (IOException ex) {
+                    System.out.println(ex.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * The state of one worker connection: its read buffer, the record being
+     * received, the queue of outgoing bytes and its protocol session.
+     *
+     * <p>
+     * The I/O thread only splits the incoming bytes into complete records.
+     * The records are then decrypted and handled one after another on the
+     * message pool; the replies carry the request IDs, so a worker may
+     * pipeline its requests. While `MAX_INBOX` records wait to be handled or
+     * `MAX_WRITE_QUEUE` buffers wait to be written, the connection is not
+     * read, so a peer that sends faster than it is served, or does not read
+     * its replies, is held back by TCP flow control.
+     */
+    private class Connection implements SessionChannel {
+
+        private final IoLoop loop;
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final WorkerSession session = new WorkerSession(registry, tickets);
+
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private byte recordType;
+        private int recordRequestId;
+        private byte[] recordBody;
+        private int recordLength;
+        private int recordFilled;
+        private boolean closed;
+        private volatile boolean readPaused;
+
+        private final Queue<ByteBuffer> writeQueue = new ArrayDeque<>();
+        private final Object sendLock = new Object();
+        private final RecordCipher.RecordSink sealedSink;
+        private volatile RecordCipher cipher;
+        private volatile MessageCompression compression;
+
+        private final Queue<Record> inbox = new ArrayDeque<>();
+        private boolean scheduled = false;
+
+        Connection(IoLoop loop, SocketChannel channel, SelectionKey key) {
+            this.loop = loop;
+            this.channel = channel;
+            this.key = key;
+            this.sealedSink = record -> send(loop.copyToPooled(record));
+        }
+
+        /**
+         * Reads what is available from the socket and dispatches every
+         * complete record. Called on the I/O thread.
+         */
+        void read() throws IOException {
+            if (channel.read(readBuffer) < 0) {
+                close();
+                return;
+            }
+            readBuffer.flip();
+            try {
+                while (true) {
+                    if (recordBody == null) {
+                        if (readBuffer.remaining() < RecordChannel.HEADER_LENGTH) {
+                            break;
+                        }
+                        int length = readBuffer.getInt();
+                        recordType = readBuffer.get();
+                        recordRequestId = readBuffer.getInt();
+                        // Only a handshake is accepted before the session is started.
+                        RecordChannel.checkLength(length, cipher == null ? RecordChannel.MAX_HANDSHAKE_LENGTH : RecordChannel.MAX_RECORD_LENGTH);
+                        recordBody = new byte[Math.min(length, READ_BUFFER_SIZE)];
+                        recordLength = length;
+                        recordFilled = 0;
+                    }
+                    if (recordFilled == recordBody.length && recordFilled < recordLength) {
+                        recordBody = Arrays.copyOf(recordBody, (int) Math.min(recordLength, 2L * recordFilled));
+                    }
+                    int count = Math.min(readBuffer.remaining(), recordBody.length - recordFilled);
+                    readBuffer.get(recordBody, recordFilled, count);
+                    recordFilled += count;
+                    if (recordFilled < recordLength) {
+                        if (readBuffer.hasRemaining()) {
+                            continue;
+                        }
+                        break;
+                    }
+                    dispatch(new Record(recordType, recordRequestId, recordBody));
+                    recordBody = null;
+                }
+            } finally {
+                readBuffer.compact();
+            }
+            updateInterest();
+        }
+
+        /**
+         * Tells whether the connection has as many records waiting to be
+         * handled or buffers waiting to be written as it may hold.
+         */
+        private boolean isFull() {
+            synchronized (inbox) {
+                if (inbox.size() >= MAX_INBOX) {
+                    return true;
+                }
+            }
+            synchronized (writeQueue) {
+                return writeQueue.size() >= MAX_WRITE_QUEUE;
+            }
+        }
+
+        /**
+         * Sets the interest of the key from the state of the queues: the
+         * socket is written while replies are queued and read while the
+         * connection is not full. Called on the I/O thread.
+         */
+        private void updateInterest() {
+            if (!key.isValid()) {
+                return;
+            }
+            boolean pending;
+            synchronized (writeQueue) {
+                pending = !writeQueue.isEmpty();
+            }
+            readPaused = isFull();
+            key.interestOps((readPaused ? 0 : SelectionKey.OP_READ) | (pending ? SelectionKey.OP_WRITE : 0));
+        }
+
+        /**
+         * Writes as much of the queued replies as the socket accepts. Called
+         * on the I/O thread.
+         */
+        void write() throws IOException {
+            synchronized (writeQueue) {
+                ByteBuffer head;
+                while ((head = writeQueue.peek()) != null) {
+                    channel.write(head);
+                    if (head.hasRemaining()) {
+                        return;
+                    }
+                    loop.recycle(writeQueue.poll());
+                }
+            }
+            updateInterest();
+        }
+
+        /**
+         * Closes the connection and returns its session permit. Called on the
+         * I/O thread.
+         */
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+            }
+            sessionPermits.release();
+        }
+
+        private void dispatch(Record record) {
+            synchronized (inbox) {
+                inbox.add(record);
+                if (scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            messagePool.execute(this::handleRecords);
+        }
+
+        /**
+         * Handles the queued records of this connection in order. Runs on the
+         * message pool.
+         */
+        private void handleRecords() {
+            while (true) {
+                Record record;
+                synchronized (inbox) {
+                    record = inbox.poll();
+                    if (record == null) {
+                        scheduled = false;
+                        return;
+                    }
+                }
+                if (readPaused) {
+                    // Room has been made; reading resumes if the write queue
+                    // has room as well.
+                    loop.execute(this::updateInterest);
+                }
+                if (record.getType() == RecordChannel.HANDSHAKE) {
+                    // The handshake runs on the handshake executor. The rest of
+                    // the inbox is handled once it is answered, so later
+                    // requests find the session key in place.
+                    if (handshakes.submit(() -> {
+                        if (handle(record)) {
+                            messagePool.execute(this::handleRecords);
+                        }
+                    }) != null) {
+                        return;
+                    }
+                    writeRecord(HandshakeExecutor.retryAlert(record.getRequestId()));
+                } else if (!handle(record)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Decrypts and handles one record.
+         *
+         * @return False if the connection has been closed.
+         */
+        private boolean handle(Record record) {
+            try {
+                RecordCipher recordCipher = cipher;
+                if (recordCipher != null
+                        && (record.getType() == RecordChannel.DATA || record.getType() == RecordChannel.DATA_CHUNK)) {
+                    byte[] message = recordCipher.open(record);
+                    if (message == null) {
+                        return true;
+                    }
+                    record = new Record(RecordChannel.DATA, record.getRequestId(), message);
+                }
+                session.handleRecord(record, this);
+                return true;
+            } catch (RecordCipher.LimitException ex) {
+                // Tell the worker why before closing; the alert is written as
+                // far as the socket takes it at once.
+                writeRecord(new Record(RecordChannel.ALERT, record.getRequestId(), ex.getMessage().getBytes(StandardCharsets.UTF_8)));
+                loop.execute(() -> {
+                    try {
+                        write();
+                    } catch (IOException e) {
+                    }
+                    close();
+                });
+                return false;
+            } catch (IOException | RuntimeException ex) {
+                loop.execute(this::close);
+                return false;
+            }
+        }
+
+        @Override
+        public void writeRecord(Record record) {
+            synchronized (sendLock) {
+                send(RecordChannel.encode(record));
+            }
+        }
+
+        /**
+         * Queues the data records of a message as they are encrypted; the
+         * send lock keeps them in the order their nonces were taken. Each
+         * record is queued in a pooled direct buffer. A message that cannot be
+         * encoded completely is abandoned without its last record and the
+         * connection is closed.
+         */
+        @Override
+        public void writeMessage(int requestId, Object message) throws IOException {
+            RecordCipher recordCipher = cipher;
+            if (recordCipher == null) {
+                throw new IOException("No session started");
+            }
+            MessageCompression messageCompression = compression;
+            synchronized (sendLock) {
+                RecordCipher.MessageStream out = recordCipher.newMessageStream(requestId, sealedSink);
+                try {
+                    if (messageCompression == null) {
+                        MessageCodec.encode(message, out);
+                    } else {
+                        messageCompression.write(message, out);
+                    }
+                } catch (IOException | RuntimeException ex) {
+                    out.abandon();
+                    loop.execute(this::close);
+                    throw ex;
+                }
+                out.close();
+            }
+        }
+
+        /**
+         * Queues an artifact: its sealed content key in a pooled buffer,
+         * followed by a view of the ciphertext shared by all connections.
+         */
+        @Override
+        public void writeArtifact(int requestId, SealedArtifact artifact) throws IOException {
+            RecordCipher recordCipher = cipher;
+            if (recordCipher == null || !recordCipher.canSealArtifact(artifact)) {
+                writeMessage(requestId, artifact.getMessage());
+                return;
+            }
+            synchronized (sendLock) {
+                ByteBuffer header = loop.copyToPooled(recordCipher.sealArtifact(requestId, artifact));
+                synchronized (writeQueue) {
+                    writeQueue.add(header);
+                }
+                send(artifact.getBuffer());
+            }
+        }
+
+        @Override
+        public void startSession(SecretKey sessionKey, String cipherSuite, String compression) {
+            this.compression = MessageCompression.create(compression);
+            cipher = new RecordCipher(sessionKey, cipherSuite, true);
+        }
+
+        private void send(ByteBuffer bytes) {
+            synchronized (writeQueue) {
+                writeQueue.add(bytes);
+            }
+            loop.execute(this::updateInterest);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package master;
+
+import contract.CalculatePi;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The `PiBenchmark` class measures the wall time of `CalculatePi` against the
+ * number of digits and the number of cores. Every row is computed in a
+ * fork/join pool of the given parallelism, which the Chudnovsky engine forks
+ * its splitting tree into; Machin's formula is timed as well up to 20000
+ * digits.
+ *
+ * <pre>
+ * java -cp dist/Master.jar master.PiBenchmark 1000000 8
+ * </pre>
+ *
+ */
+public class PiBenchmark {
+
+    private static final int MAX_MACHIN_DIGITS = 20000;
+
+    private static volatile Object sink;
+
+    /**
+     * @param args the command line arguments: optional largest number of
+     * digits and largest number of cores
+     * @throws Exception If a computation fails.
+     */
+    public static void main(String[] args) throws Exception {
+        int maxDigits = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int maxCores = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        // Warm up the JIT on a size that takes the same code paths.
+        for (int i = 0; i < 5; i++) {
+            sink = CalculatePi.computePiChudnovsky(20000);
+            sink = CalculatePi.computePi(2000);
+        }
+
+        System.out.printf("%10s %6s %14s %14s%n", "digits", "cores", "chudnovsky ms", "machin ms");
+        for (int digits = 1000; digits <= maxDigits; digits *= 10) {
+            int size = digits;
+            for (int cores = 1; cores <= maxCores; cores *= 2) {
+                ForkJoinPool pool = new ForkJoinPool(cores);
+                try {
+                    long start = System.nanoTime();
+                    sink = pool.submit(() -> CalculatePi.computePiChudnovsky(size)).get();
+                    double chudnovsky = (System.nanoTime() - start) / 1e6;
+                    String machin = "-";
+                    if (cores == 1 && digits <= MAX_MACHIN_DIGITS) {
+                        start = System.nanoTime();
+                        sink = CalculatePi.computePi(digits);
+                        machin = String.format("%.1f", (System.nanoTime() - start) / 1e6);
+                    }
+                    System.out.printf("%10d %6d %14.1f %14s%n", digits, cores, chudnovsky, machin);
+                } finally {
+                    pool.shutdown();
+                }
+            }
+        }
+    }
+}
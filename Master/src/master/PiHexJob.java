@@ -0,0 +1,211 @@
+package master;
+
+import contract.CalculatePiHex;
+import contract.Task;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The `PiHexJob` class represents a job for calculating many hexadecimal
+ * digits of Pi, shared out among the workers as `CalculatePiHex` windows.
+ *
+ * <p>
+ * The digits are cut into windows of a fixed size, each of which is
+ * calculated independently. A window also covers the first `OVERLAP` digits
+ * of the next one, and the overlapping digits of neighbouring windows must
+ * agree. Windows are handed out in order; once every window has been handed
+ * out, the windows still without a result are handed out again, so the job
+ * completes even if workers disappear. A completed job hands out every window
+ * once more, and the results of this verification pass are checked against
+ * the stored ones; after that the job hands out nothing.
+ *
+ * <p>
+ * A window whose result disagrees with a neighbour or with an earlier result
+ * for it is discarded together with the other window and calculated again.
+ * When every window has a result, the digits are stitched together and
+ * written to the file `pi-hex-N.txt`, where N is the number of digits. The
+ * file is written from a snapshot of the results outside the lock of the job,
+ * so the sessions handing out and completing windows do not wait for it.
+ *
+ */
+final class PiHexJob implements TaskJob {
+
+    /**
+     * digits of the next window that a window also calculates, for the cross
+     * check
+     */
+    static final int OVERLAP = 16;
+
+    /**
+     * digits shown at both ends of the stitched result
+     */
+    private static final int DIGITS_SHOWN = 32;
+
+    private final long digits;
+    private final int window;
+    private final String[] results;
+    private int issued;
+    private int reissue;
+    private int verified;
+    private int completed;
+    private boolean written;
+
+    // Held while the digits are written, so two writes do not interleave.
+    private final Object writeLock = new Object();
+
+    /**
+     * Constructs a new `PiHexJob` instance.
+     *
+     * @param digits The number of hexadecimal digits after the point.
+     * @param window The number of digits of a window.
+     * @throws IllegalArgumentException If the digits do not fit in
+     * `CalculatePiHex.MAX_POSITION` or there are too many windows.
+     */
+    PiHexJob(long digits, int window) {
+        if (digits < 1 || window < 1) {
+            throw new IllegalArgumentException("digits and window must be positive");
+        }
+        if (digits + OVERLAP - 1 > CalculatePiHex.MAX_POSITION) {
+            throw new IllegalArgumentException(digits + " digits exceed " + CalculatePiHex.MAX_POSITION);
+        }
+        long windows = (digits + window - 1) / window;
+        if (windows > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many windows: " + windows);
+        }
+        this.digits = digits;
+        this.window = window;
+        this.results = new String[(int) windows];
+    }
+
+    @Override
+    public Class<? extends Task> getTaskClass() {
+        return CalculatePiHex.class;
+    }
+
+    @Override
+    public synchronized Task nextTask() {
+        int index;
+        if (issued < results.length) {
+            index = issued++;
+        } else if (completed < results.length) {
+            // Every window has been handed out; hand out those without a
+            // result again.
+            index = reissue;
+            for (int i = 0; i < results.length; i++) {
+                int candidate = (reissue + i) % results.length;
+                if (results[candidate] == null) {
+                    index = candidate;
+                    break;
+                }
+            }
+            reissue = (index + 1) % results.length;
+        } else if (verified < results.length) {
+            // Every window is done; hand each out once more to check it.
+            index = verified++;
+        } else {
+            return null;
+        }
+        return new CalculatePiHex((long) index * window, count(index));
+    }
+
+    /**
+     * Gets the number of digits calculated for a window, including the
+     * overlap.
+     */
+    private int count(int index) {
+        return (int) Math.min(window, digits - (long) index * window) + OVERLAP;
+    }
+
+    @Override
+    public void complete(Task task) {
+        String[] done = record(task);
+        if (done != null) {
+            write(done);
+        }
+    }
+
+    /**
+     * Checks and stores the result of a window.
+     *
+     * @return A snapshot of all results, if this result completed the job
+     * and the digits are to be written, or null.
+     */
+    private synchronized String[] record(Task task) {
+        if (!(task instanceof CalculatePiHex)) {
+            return null;
+        }
+        CalculatePiHex piHex = (CalculatePiHex) task;
+        long position = piHex.getPosition();
+        if (position % window != 0 || position / window >= results.length) {
+            return null;
+        }
+        int index = (int) (position / window);
+        String result = (String) piHex.getResult();
+        if (piHex.getCount() != count(index) || result == null || result.length() != count(index)) {
+            return null;
+        }
+        if (results[index] != null) {
+            if (!results[index].equals(result)) {
+                System.out.println("Warning: window " + index + " of the Pi job differs from its earlier result; it is calculated again.");
+                discard(index);
+            }
+            return null;
+        }
+        // The overlaps with the neighbours must agree.
+        if (index > 0 && results[index - 1] != null && !tail(index - 1).equals(result.substring(0, OVERLAP))) {
+            System.out.println("Warning: windows " + (index - 1) + " and " + index + " of the Pi job disagree; they are calculated again.");
+            discard(index - 1);
+            return null;
+        }
+        if (index + 1 < results.length && results[index + 1] != null && !result.substring(result.length() - OVERLAP).equals(results[index + 1].substring(0, OVERLAP))) {
+            System.out.println("Warning: windows " + index + " and " + (index + 1) + " of the Pi job disagree; they are calculated again.");
+            discard(index + 1);
+            return null;
+        }
+        results[index] = result;
+        completed++;
+        if (completed == results.length && !written) {
+            written = true;
+            return results.clone();
+        }
+        return null;
+    }
+
+    private String tail(int index) {
+        return results[index].substring(results[index].length() - OVERLAP);
+    }
+
+    private void discard(int index) {
+        if (results[index] != null) {
+            results[index] = null;
+            completed--;
+            written = false;
+        }
+    }
+
+    /**
+     * Stitches the windows together and writes the digits to a file.
+     *
+     * @param done The results of all windows.
+     */
+    private void write(String[] done) {
+        StringBuilder pi = new StringBuilder("3.");
+        for (String result : done) {
+            pi.append(result, 0, result.length() - OVERLAP);
+        }
+        String fileName = "pi-hex-" + digits + ".txt";
+        String shown = digits <= 2 * DIGITS_SHOWN ? pi.toString()
+                : pi.substring(0, 2 + DIGITS_SHOWN) + "..." + pi.substring(pi.length() - DIGITS_SHOWN);
+        System.out.println("The Pi job is complete: " + shown);
+        synchronized (writeLock) {
+            try (Writer writer = new FileWriter(fileName)) {
+                writer.write(pi.toString());
+                writer.write('\n');
+                System.out.println("The " + digits + " hexadecimal digits of Pi have been written to " + fileName + ".");
+            } catch (IOException ex) {
+                System.out.println("Exception in write(): " + ex.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package master;
+
+import contract.CalculateGCD;
+import contract.MessageCodec;
+import contract.TaskObject;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import javax.crypto.SecretKey;
+import security.RecordChannel;
+import security.RecordCipher;
+import security.SecurityUtil;
+
+/**
+ * The `RecordBenchmark` class measures the encrypted message path of a
+ * `RecordChannel` under sustained load. One thread keeps writing task
+ * objects over a loopback connection and another reads and decodes them; the
+ * heap allocated by each thread per message is taken from the
+ * `ThreadMXBean`.
+ *
+ * <pre>
+ * java -cp dist/Master.jar master.RecordBenchmark 1000000 AES/GCM
+ * </pre>
+ *
+ */
+public class RecordBenchmark {
+
+    private static volatile Object sink;
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * @param args the command line arguments: optional number of messages
+     * and cipher suite
+     * @throws Exception If the loopback connection fails.
+     */
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        String cipherSuite = args.length > 1 ? args[1] : RecordCipher.AES_GCM;
+        SecretKey sessionKey = SecurityUtil.SecretKeyGen();
+
+        TaskObject message = new TaskObject();
+        message.setTaskID(3);
+        message.setCredit(10);
+        CalculateGCD task = new CalculateGCD(600851475143L, 1234567890L);
+        task.executeTask();
+        message.setTObject(task);
+
+        try (ServerSocket server = new ServerSocket(0);
+                Socket client = new Socket("localhost", server.getLocalPort());
+                Socket accepted = server.accept();
+                RecordChannel sender = new RecordChannel(accepted, true);
+                RecordChannel receiver = new RecordChannel(client, false)) {
+            sender.startSession(sessionKey, cipherSuite);
+            receiver.startSession(sessionKey, cipherSuite);
+
+            int warmUp = count / 5;
+            long[] sent = new long[1];
+            Thread writer = new Thread(() -> {
+                try {
+                    for (int i = 0; i < warmUp; i++) {
+                        sender.writeMessage(i, message);
+                    }
+                    long before = allocatedBytes();
+                    for (int i = 0; i < count; i++) {
+                        sender.writeMessage(i, message);
+                    }
+                    sent[0] = allocatedBytes() - before;
+                } catch (IOException ex) {
+                    System.out.println("Exception in writer: " + ex.getMessage());
+                }
+            }, "record-benchmark-writer");
+            writer.start();
+
+            for (int i = 0; i < warmUp; i++) {
+                sink = MessageCodec.decode(receiver.readMessage().getBody());
+            }
+            long before = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                sink = MessageCodec.decode(receiver.readMessage().getBody());
+            }
+            long elapsed = System.nanoTime() - start;
+            long received = allocatedBytes() - before;
+            writer.join();
+
+            System.out.printf("suite %s, %d messages of %d bytes%n", cipherSuite, count, MessageCodec.encode(message).length);
+            System.out.printf("throughput:        %10.0f messages/s%n", count * 1e9 / elapsed);
+            System.out.printf("sender allocates:   %9.1f bytes/message (%.1f MB/s)%n",
+                    (double) sent[0] / count, sent[0] / (elapsed / 1e9) / 1e6);
+            System.out.printf("receiver allocates: %9.1f bytes/message (%.1f MB/s)%n",
+                    (double) received / count, received / (elapsed / 1e9) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package master;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import security.RecordChannel;
+
+/**
+ * The `SessionBenchmark` class compares how many idle worker sessions a
+ * master holds per GB of memory, and how quickly it takes on new connections
+ * while holding them, for three ways of serving the connections:
+ *
+ * <ul>
+ * <li>`thread`: a new thread per connection without a limit, as the master
+ * did originally;</li>
+ * <li>`master`: the blocking `Master`, with pooled handler threads and
+ * bounded admission;</li>
+ * <li>`nio`: the selector based `NioMaster`.</li>
+ * </ul>
+ *
+ * <p>
+ * The server runs in the same JVM as the connections opened to it, so the
+ * heap per session includes the client end of the loopback connection, which
+ * is the same for every mode. Every thread also reserves a stack outside the
+ * heap; the second figure of sessions per GB counts the reserved size
+ * (-Xss) for each thread added, which is an upper bound of what the stacks
+ * take. The accept latency is the time from opening a connection until the
+ * server has accepted it, read a record header and closed the connection
+ * because the announced record is too large for a handshake. Each mode is
+ * measured in a JVM of its own:
+ *
+ * <pre>
+ * java -cp dist/Master.jar master.SessionBenchmark thread 5000
+ * java -cp dist/Master.jar master.SessionBenchmark master 5000
+ * java -cp dist/Master.jar master.SessionBenchmark nio 5000
+ * </pre>
+ *
+ */
+public class SessionBenchmark {
+
+    private static final int PROBES = 500;
+
+    private static final int BURST = 500;
+
+    /**
+     * Starts the server of a mode in the background.
+     */
+    private static void startServer(String mode, int port, int sessions) throws IOException {
+        int capacity = sessions + BURST + PROBES;
+        Runnable server;
+        switch (mode) {
+            case "thread":
+                ServerSocket serverSocket = new ServerSocket(port, Master.DEFAULT_BACKLOG);
+                server = () -> acceptThreadPerConnection(serverSocket);
+                break;
+            case "master":
+                server = new Master(port, capacity, Master.DEFAULT_BACKLOG)::run;
+                break;
+            case "nio":
+                int cores = Runtime.getRuntime().availableProcessors();
+                server = new NioMaster(port, capacity, Master.DEFAULT_BACKLOG, Math.max(1, cores / 2), cores)::run;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+        Thread thread = new Thread(server, "session-benchmark-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Serves every connection on a new thread, which reads records until the
+     * connection fails.
+     */
+    private static void acceptThreadPerConnection(ServerSocket serverSocket) {
+        while (true) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread handler = new Thread(() -> {
+                    try (RecordChannel channel = new RecordChannel(socket, true)) {
+                        while (true) {
+                            channel.readMessage();
+                        }
+                    } catch (IOException ex) {
+                    }
+                });
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException ex) {
+                System.out.println("Exception in acceptThreadPerConnection(): " + ex.getMessage());
+                return;
+            }
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static int threadCount() {
+        return ManagementFactory.getThreadMXBean().getThreadCount();
+    }
+
+    private static long threadStackSize() {
+        HotSpotDiagnosticMXBean diagnostics = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+        return Long.parseLong(diagnostics.getVMOption("ThreadStackSize").getValue()) * 1024;
+    }
+
+    /**
+     * Sends a record header announcing a body larger than a handshake, which
+     * the server answers by closing the connection.
+     */
+    private static void sendProbe(SocketChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RecordChannel.HEADER_LENGTH);
+        header.putInt(RecordChannel.MAX_HANDSHAKE_LENGTH + 1).put(RecordChannel.HANDSHAKE).putInt(0).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    private static void awaitClose(SocketChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        try {
+            while (channel.read(buffer) >= 0) {
+                buffer.clear();
+            }
+        } catch (IOException ex) {
+            // A reset counts as closed.
+        }
+        channel.close();
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (fraction * sorted.length))] / 1e3;
+    }
+
+    /**
+     * @param args the command line arguments: mode (`thread`, `master` or
+     * `nio`), optional number of idle sessions and port
+     * @throws Exception If a connection fails.
+     */
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "master";
+        int sessions = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 5099;
+        InetSocketAddress address = new InetSocketAddress("localhost", port);
+
+        startServer(mode, port, sessions);
+        Thread.sleep(500);
+        // Warm up the accept and close paths before measuring.
+        for (int i = 0; i < PROBES; i++) {
+            SocketChannel channel = SocketChannel.open(address);
+            sendProbe(channel);
+            awaitClose(channel);
+        }
+
+        long heapBefore = usedHeap();
+        int threadsBefore = threadCount();
+        List<SocketChannel> idle = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            idle.add(SocketChannel.open(address));
+        }
+        // Every session has been taken on once a probe after them is served.
+        SocketChannel last = SocketChannel.open(address);
+        sendProbe(last);
+        awaitClose(last);
+        long heapPerSession = (usedHeap() - heapBefore) / sessions;
+        double threadsPerSession = (double) (threadCount() - threadsBefore) / sessions;
+
+        long[] latencies = new long[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            long start = System.nanoTime();
+            SocketChannel channel = SocketChannel.open(address);
+            sendProbe(channel);
+            awaitClose(channel);
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+
+        long start = System.nanoTime();
+        SocketChannel[] burst = new SocketChannel[BURST];
+        for (int i = 0; i < BURST; i++) {
+            burst[i] = SocketChannel.open(address);
+            sendProbe(burst[i]);
+        }
+        for (SocketChannel channel : burst) {
+            awaitClose(channel);
+        }
+        double burstMillis = (System.nanoTime() - start) / 1e6;
+
+        long stackSize = threadStackSize();
+        double perSession = heapPerSession + threadsPerSession * stackSize;
+        System.out.printf("mode %s, %d idle sessions%n", mode, sessions);
+        System.out.printf("heap per session:       %10d bytes%n", heapPerSession);
+        System.out.printf("threads per session:    %10.2f (%d KB stack reserved each)%n", threadsPerSession, stackSize / 1024);
+        System.out.printf("sessions per GB heap:   %10.0f%n", (1L << 30) / (double) Math.max(1, heapPerSession));
+        System.out.printf("sessions per GB total:  %10.0f%n", (1L << 30) / Math.max(1, perSession));
+        System.out.printf("accept latency:         %10.1f us p50, %.1f us p99%n", percentile(latencies, 0.5), percentile(latencies, 0.99));
+        System.out.printf("%-24s%10.1f ms%n", "burst of " + BURST + ":", burstMillis);
+        for (SocketChannel channel : idle) {
+            channel.close();
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,110 @@
+package master;
+
+import contract.Task;
+
+/**
+ * The `TaskDescriptor` class describes one task of the task registry: its
+ * type and parameters, the cost of running it and the credit awarded for it.
+ * Descriptors are immutable and shared by all worker sessions; the
+ * descriptor of a job type holds the job its tasks are units of.
+ *
+ */
+final class TaskDescriptor {
+
+    private final int id;
+    private final TaskType type;
+    private final long[] parameters;
+    private final TaskJob job;
+    private final String className;
+    private final int cost;
+    private final int credit;
+    private final String description;
+
+    /**
+     * Constructs a new `TaskDescriptor` instance.
+     *
+     * @param id The ID of the task, its index in the registry.
+     * @param type The type of the task.
+     * @param parameters The parameters of the task; the array is not copied.
+     * @param cost The relative cost of running the task.
+     * @param credit The credit awarded for a result.
+     * @param description The description shown to the workers, or null to
+     * describe the task by its type and parameters.
+     * @throws IllegalArgumentException If the parameters are not valid for
+     * the type.
+     */
+    TaskDescriptor(int id, TaskType type, long[] parameters, int cost, int credit, String description) {
+        this.id = id;
+        this.type = type;
+        this.parameters = parameters;
+        this.job = type.newJob(parameters);
+        this.className = (job != null ? job.getTaskClass() : type.taskClass(parameters)).getSimpleName() + ".class";
+        this.cost = cost;
+        this.credit = credit;
+        this.description = description;
+    }
+
+    /**
+     * Creates a new task instance to be sent to a worker, or hands out the
+     * next unit of the job.
+     *
+     * @return The task, or null if the job is done.
+     */
+    Task newTask() {
+        return job != null ? job.nextTask() : type.newTask(parameters);
+    }
+
+    /**
+     * Passes the result of a task performed by a worker to the job it is a
+     * unit of, if any.
+     *
+     * @param task The performed task.
+     */
+    void complete(Task task) {
+        if (job != null) {
+            job.complete(task);
+        }
+    }
+
+    /**
+     * @return the ID of the task
+     */
+    int getId() {
+        return id;
+    }
+
+    /**
+     * @return the type of the task
+     */
+    TaskType getType() {
+        return type;
+    }
+
+    /**
+     * @return the name of the class file sent to the workers
+     */
+    String getClassName() {
+        return className;
+    }
+
+    /**
+     * @return the relative cost of running the task
+     */
+    int getCost() {
+        return cost;
+    }
+
+    /**
+     * @return the credit awarded for a result
+     */
+    int getCredit() {
+        return credit;
+    }
+
+    /**
+     * @return the description shown to the workers
+     */
+    String getDescription() {
+        return description != null ? description : type.describe(parameters);
+    }
+}
@@ -0,0 +1,37 @@
+package master;
+
+import contract.Task;
+
+/**
+ * The `TaskJob` interface represents a job too large for one worker, which
+ * the master breaks into units handed out as ordinary tasks. A task
+ * descriptor of a job type hands out the units of one job and passes their
+ * results back to it. Implementations are shared by all worker sessions and
+ * must be thread-safe.
+ *
+ */
+interface TaskJob {
+
+    /**
+     * Gets the class of the units, whose class file the workers need.
+     *
+     * @return The task class.
+     */
+    Class<? extends Task> getTaskClass();
+
+    /**
+     * Hands out the next unit of the job. Once every unit has been handed
+     * out, the units still without a result are handed out again.
+     *
+     * @return The task, or null once the job is done and there is no more
+     * work to hand out.
+     */
+    Task nextTask();
+
+    /**
+     * Takes the result of a unit performed by a worker.
+     *
+     * @param task The performed task, as received from the worker.
+     */
+    void complete(Task task);
+}
@@ -0,0 +1,312 @@
+package master;
+
+import contract.Task;
+import contract.TaskList;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The `TaskRegistry` class is the catalog of the tasks the master hands out.
+ * It replaces the task IDs, credits and class names that used to be spelled
+ * out in `switch` statements.
+ *
+ * <p>
+ * Tasks are read in bulk from a task file, one task per line, and get the
+ * line order as their ID. A line holds the type, the comma-separated
+ * parameters, the credit, the cost and an optional description, separated by
+ * semicolons; empty lines and lines starting with `#` are skipped:
+ *
+ * <pre>
+ * # type;parameters;credit;cost;description
+ * pi;50;25;1;Calculate Pi to 50 decimal digits
+ * gcd;252,24;50;1
+ * </pre>
+ *
+ * <p>
+ * The descriptors are kept in an array indexed by ID, so a lookup neither
+ * searches nor allocates. The registry is immutable once loaded and shared by
+ * all worker sessions.
+ *
+ * <p>
+ * The task list offered to the workers has a version derived from its
+ * content, so a worker that already holds the current list is answered with
+ * "not modified" instead of the list, even after the master has restarted.
+ *
+ */
+final class TaskRegistry {
+
+    /**
+     * file the tasks are read from unless -Dmaster.tasks names another one
+     */
+    static final String DEFAULT_FILE = "tasks.txt";
+
+    /**
+     * tasks offered when there is no task file
+     */
+    private static final String DEFAULT_TASKS = String.join("\n",
+            "pi;50;25;1;Calculate Pi to 50 decimal digits",
+            "primes;1,70;30;1;Calculate Prime from 1-70",
+            "gcd;128,76;35;1;Calculate GCD of 128 and 76",
+            "pi;70;40;1;Calculate Pi to 70 decimal digits",
+            "primes;1,100;45;1;Calculate Prime from 1-100",
+            "gcd;252,24;50;1;Calculate GCD of 252 and 24");
+
+    private final TaskDescriptor[] descriptors;
+    private final String[] availableTasks;
+    private final String[] classNames;
+    private final long version;
+    private final TaskList taskList;
+    private final TaskList notModified;
+
+    private TaskRegistry(TaskDescriptor[] descriptors) {
+        this.descriptors = descriptors;
+        this.availableTasks = new String[descriptors.length];
+        this.classNames = new String[descriptors.length];
+        for (int i = 0; i < descriptors.length; i++) {
+            availableTasks[i] = descriptors[i].getDescription();
+            classNames[i] = descriptors[i].getClassName();
+        }
+        this.version = version(availableTasks, classNames);
+        this.taskList = page(availableTasks, classNames, null, 0, descriptors.length);
+        this.notModified = new TaskList();
+        this.notModified.setVersion(version);
+        this.notModified.setNotModified(true);
+        this.notModified.setTotalTasks(descriptors.length);
+    }
+
+    /**
+     * Derives the version of a task list from the SHA-256 hash of its
+     * content; it is never 0, which stands for no list.
+     */
+    private static long version(String[] availableTasks, String[] classNames) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (int i = 0; i < availableTasks.length; i++) {
+                digest.update(availableTasks[i].getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(classNames[i].getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            long version = ByteBuffer.wrap(digest.digest()).getLong() & Long.MAX_VALUE;
+            return version == 0 ? 1 : version;
+        } catch (NoSuchAlgorithmException ex) {
+            System.out.println("Exception in version(): " + ex.getMessage());
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Loads the registry from a task file, or offers the default tasks if
+     * the file does not exist.
+     *
+     * @param fileName The path to the task file.
+     * @return The task registry.
+     */
+    static TaskRegistry load(String fileName) {
+        File file = new File(fileName);
+        if (!file.isFile()) {
+            return defaults();
+        }
+        try (Reader reader = new FileReader(file)) {
+            TaskRegistry registry = read(reader);
+            System.out.println("Loaded " + registry.size() + " tasks from " + fileName + ".");
+            return registry;
+        } catch (IOException ex) {
+            System.out.println("Exception in load(): " + ex.getMessage());
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Gets a registry of the default tasks.
+     *
+     * @return The task registry.
+     */
+    static TaskRegistry defaults() {
+        try {
+            return read(new StringReader(DEFAULT_TASKS));
+        } catch (IOException ex) {
+            System.out.println("Exception in defaults(): " + ex.getMessage());
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Reads a registry in the format of the task file.
+     *
+     * @param reader The task file.
+     * @return The task registry.
+     * @throws IOException If the file cannot be read or a line is invalid.
+     */
+    static TaskRegistry read(Reader reader) throws IOException {
+        List<TaskDescriptor> descriptors = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                descriptors.add(parse(descriptors.size(), line));
+            } catch (IllegalArgumentException ex) {
+                throw new IOException("Invalid task on line " + lineNumber + ": " + ex.getMessage(), ex);
+            }
+        }
+        return new TaskRegistry(descriptors.toArray(new TaskDescriptor[0]));
+    }
+
+    private static TaskDescriptor parse(int id, String line) {
+        String[] fields = line.split(";", 5);
+        if (fields.length < 4) {
+            throw new IllegalArgumentException("expected type;parameters;credit;cost[;description]");
+        }
+        TaskType type = TaskType.forName(fields[0].trim());
+        if (type == null) {
+            throw new IllegalArgumentException("unknown task type " + fields[0].trim());
+        }
+        String[] values = fields[1].split(",");
+        if (values.length != type.getParameterCount()) {
+            throw new IllegalArgumentException(type.getName() + " takes " + type.getParameterCount() + " parameters");
+        }
+        long[] parameters = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            parameters[i] = Long.parseLong(values[i].trim());
+        }
+        int credit = Integer.parseInt(fields[2].trim());
+        int cost = Integer.parseInt(fields[3].trim());
+        String description = fields.length > 4 && !fields[4].trim().isEmpty() ? fields[4].trim() : null;
+        return new TaskDescriptor(id, type, parameters, cost, credit, description);
+    }
+
+    /**
+     * Gets the descriptor of a task.
+     *
+     * @param id The ID of the task.
+     * @return The descriptor, or null if there is no task with this ID.
+     */
+    TaskDescriptor get(int id) {
+        return id >= 0 && id < descriptors.length ? descriptors[id] : null;
+    }
+
+    /**
+     * Creates a new instance of a task.
+     *
+     * @param id The ID of the task.
+     * @return The task, or null if there is no task with this ID.
+     */
+    Task newTask(int id) {
+        TaskDescriptor descriptor = get(id);
+        return descriptor == null ? null : descriptor.newTask();
+    }
+
+    /**
+     * Gets the credit awarded for a task.
+     *
+     * @param id The ID of the task.
+     * @return The credit, or null if there is no task with this ID.
+     */
+    Integer getCredit(int id) {
+        TaskDescriptor descriptor = get(id);
+        return descriptor == null ? null : descriptor.getCredit();
+    }
+
+    /**
+     * @return the number of tasks in the registry
+     */
+    int size() {
+        return descriptors.length;
+    }
+
+    /**
+     * @return the version of the task list
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the list of all tasks as it is sent to the workers.
+     *
+     * @return The task list; it is shared and must not be modified.
+     */
+    TaskList getTaskList() {
+        return taskList;
+    }
+
+    /**
+     * Answers a request of a worker for the task list.
+     *
+     * @param request The request, with the version of the list the worker
+     * holds, the page and the class filter.
+     * @return "Not modified" if the worker holds the current version, or the
+     * requested page; the common answers are shared and must not be
+     * modified.
+     */
+    TaskList list(TaskList request) {
+        if (request.getVersion() == version) {
+            return notModified;
+        }
+        int offset = Math.max(0, request.getOffset());
+        int limit = request.getLimit() > 0 ? request.getLimit() : Integer.MAX_VALUE;
+        String[] classFilter = request.getClassFilter();
+        if (classFilter == null) {
+            if (offset == 0 && limit >= descriptors.length) {
+                return taskList;
+            }
+            int from = Math.min(offset, descriptors.length);
+            int to = from + Math.min(limit, descriptors.length - from);
+            return page(Arrays.copyOfRange(availableTasks, from, to), Arrays.copyOfRange(classNames, from, to), null, from, descriptors.length);
+        }
+        // Collect the page among the tasks of the requested classes.
+        Set<String> classes = new HashSet<>(Arrays.asList(classFilter));
+        List<TaskDescriptor> matches = new ArrayList<>();
+        int total = 0;
+        for (TaskDescriptor descriptor : descriptors) {
+            if (classes.contains(descriptor.getClassName())) {
+                if (total >= offset && matches.size() < limit) {
+                    matches.add(descriptor);
+                }
+                total++;
+            }
+        }
+        String[] pageTasks = new String[matches.size()];
+        String[] pageClassNames = new String[matches.size()];
+        int[] pageIDs = new int[matches.size()];
+        for (int i = 0; i < pageTasks.length; i++) {
+            TaskDescriptor descriptor = matches.get(i);
+            pageTasks[i] = availableTasks[descriptor.getId()];
+            pageClassNames[i] = classNames[descriptor.getId()];
+            pageIDs[i] = descriptor.getId();
+        }
+        TaskList page = page(pageTasks, pageClassNames, pageIDs, offset, total);
+        page.setClassFilter(classFilter);
+        return page;
+    }
+
+    private TaskList page(String[] pageTasks, String[] pageClassNames, int[] pageIDs, int offset, int total) {
+        TaskList page = new TaskList();
+        page.setAvailableTasks(pageTasks);
+        page.setTaskClassName(pageClassNames);
+        page.setTaskIDs(pageIDs);
+        page.setVersion(version);
+        page.setOffset(offset);
+        page.setTotalTasks(total);
+        return page;
+    }
+}
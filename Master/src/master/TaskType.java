@@ -0,0 +1,295 @@
+package master;
+
+import contract.CalculateBatchGCD;
+import contract.CalculateGCD;
+import contract.CalculatePi;
+import contract.CalculatePiHex;
+import contract.CalculatePrimes;
+import contract.CalculateSparsePrimes;
+import contract.Task;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * The `TaskType` class describes a kind of task the master can hand out: how
+ * many parameters it takes, which task class it uses for them, and how a task
+ * instance and its description are made from those parameters. The class
+ * file a worker needs is that of the task class, so a type may choose
+ * between several task classes; the class is chosen from the parameters
+ * without creating a task.
+ *
+ * <p>
+ * A job type makes a `TaskJob` instead, which breaks one large job into
+ * units of work.
+ *
+ * <p>
+ * The types `pi`, `primes`, `gcd`, `gcdbatch`, `gcdall` and the job type
+ * `pihex` are built in;
+ * further types are added with `register` before the task registry is
+ * loaded.
+ *
+ */
+final class TaskType {
+
+    /**
+     * a range of primes narrower than the square root of its upper bound
+     * divided by this is tested number by number instead of sieved
+     */
+    static final int SPARSE_PRIMES_RATIO = 20;
+
+    private static final Map<String, TaskType> TYPES = new ConcurrentHashMap<>();
+
+    static {
+        register(new TaskType("pi", 1, CalculatePi.class,
+                p -> new CalculatePi((int) p[0]),
+                p -> "Calculate Pi to " + p[0] + " decimal digits"));
+        register(new TaskType("primes", 2,
+                p -> primesTaskClass(p[0], p[1]),
+                p -> primesTask(p[0], p[1]),
+                p -> "Calculate Prime from " + p[0] + "-" + p[1]));
+        register(new TaskType("gcd", 2, CalculateGCD.class,
+                p -> new CalculateGCD(p[0], p[1]),
+                p -> "Calculate GCD of " + p[0] + " and " + p[1]));
+        register(new TaskType("gcdbatch", 2,
+                p -> batchGCDTaskClass(p[0]),
+                p -> batchGCDTask(p[0], p[1], false),
+                p -> "Calculate GCD of " + p[0] + " random pairs"));
+        register(new TaskType("gcdall", 2,
+                p -> batchGCDTaskClass(p[0]),
+                p -> batchGCDTask(p[0], p[1], true),
+                p -> "Calculate shared factors of " + p[0] + " random numbers"));
+        register(job("pihex", 2,
+                p -> new PiHexJob(p[0], (int) p[1]),
+                p -> "Calculate " + p[0] + " hex digits of Pi in windows of " + p[1]));
+    }
+
+    private final String name;
+    private final int parameterCount;
+    private final Function<long[], Class<? extends Task>> classifier;
+    private final Function<long[], Task> factory;
+    private final Function<long[], TaskJob> jobFactory;
+    private final Function<long[], String> describer;
+
+    /**
+     * Constructs a new `TaskType` instance whose tasks are all of one class.
+     *
+     * @param name The name of the type in the task file.
+     * @param parameterCount The number of parameters a task of this type
+     * takes.
+     * @param taskClass The class of the tasks.
+     * @param factory Creates a task from its parameters.
+     * @param describer Describes a task from its parameters, for tasks
+     * without a description of their own.
+     */
+    TaskType(String name, int parameterCount, Class<? extends Task> taskClass, Function<long[], Task> factory, Function<long[], String> describer) {
+        this(name, parameterCount, p -> taskClass, factory, null, describer);
+    }
+
+    /**
+     * Constructs a new `TaskType` instance that chooses the class of a task
+     * from its parameters.
+     *
+     * @param name The name of the type in the task file.
+     * @param parameterCount The number of parameters a task of this type
+     * takes.
+     * @param classifier Chooses the class of a task from its parameters; it
+     * throws `IllegalArgumentException` for invalid parameters.
+     * @param factory Creates a task from its parameters.
+     * @param describer Describes a task from its parameters, for tasks
+     * without a description of their own.
+     */
+    TaskType(String name, int parameterCount, Function<long[], Class<? extends Task>> classifier, Function<long[], Task> factory, Function<long[], String> describer) {
+        this(name, parameterCount, classifier, factory, null, describer);
+    }
+
+    private TaskType(String name, int parameterCount, Function<long[], Class<? extends Task>> classifier, Function<long[], Task> factory,
+            Function<long[], TaskJob> jobFactory, Function<long[], String> describer) {
+        this.name = name;
+        this.parameterCount = parameterCount;
+        this.classifier = classifier;
+        this.factory = factory;
+        this.jobFactory = jobFactory;
+        this.describer = describer;
+    }
+
+    /**
+     * Creates a job type, whose tasks are the units of a job.
+     *
+     * @param name The name of the type in the task file.
+     * @param parameterCount The number of parameters a job of this type
+     * takes.
+     * @param jobFactory Creates a job from its parameters.
+     * @param describer Describes a job from its parameters, for jobs without
+     * a description of their own.
+     * @return The task type.
+     */
+    static TaskType job(String name, int parameterCount, Function<long[], TaskJob> jobFactory, Function<long[], String> describer) {
+        return new TaskType(name, parameterCount, null, null, jobFactory, describer);
+    }
+
+    /**
+     * Adds a task type, replacing a type of the same name.
+     *
+     * @param type The task type.
+     */
+    static void register(TaskType type) {
+        TYPES.put(type.getName(), type);
+    }
+
+    /**
+     * Looks a task type up by its name.
+     *
+     * @param name The name of the type.
+     * @return The task type, or null if there is none of this name.
+     */
+    static TaskType forName(String name) {
+        return TYPES.get(name);
+    }
+
+    /**
+     * Chooses the engine for a range of primes: the sieve of
+     * `CalculatePrimes` for wide ranges, and the Miller-Rabin test of
+     * `CalculateSparsePrimes` for narrow ranges far out, where sieving with
+     * all primes up to the square root costs more than the range itself, and
+     * for ranges beyond the reach of the sieve. Either way the result must fit
+     * in one message, so a range is refused that holds an estimated number
+     * of primes above `CalculatePrimes.MAX_PRIMES`.
+     *
+     * @param low The lower bound of the range.
+     * @param high The upper bound of the range.
+     * @return The task class.
+     * @throws IllegalArgumentException If the range holds too many primes.
+     */
+    static Class<? extends Task> primesTaskClass(long low, long high) {
+        if (CalculatePrimes.estimateCount(low, high) > CalculatePrimes.MAX_PRIMES) {
+            throw new IllegalArgumentException("Range " + low + "-" + high + " holds more than " + CalculatePrimes.MAX_PRIMES
+                    + " primes; split it into several tasks");
+        }
+        if (high > CalculatePrimes.MAX_HIGH || (double) (high - low) * SPARSE_PRIMES_RATIO < Math.sqrt((double) high)) {
+            return CalculateSparsePrimes.class;
+        }
+        return CalculatePrimes.class;
+    }
+
+    /**
+     * Creates a task for a range of primes with the engine chosen by
+     * `primesTaskClass`.
+     *
+     * @param low The lower bound of the range.
+     * @param high The upper bound of the range.
+     * @return The task.
+     * @throws IllegalArgumentException If the range holds too many primes.
+     */
+    static Task primesTask(long low, long high) {
+        if (primesTaskClass(low, high) == CalculateSparsePrimes.class) {
+            return new CalculateSparsePrimes(low, high);
+        }
+        return new CalculatePrimes(low, high);
+    }
+
+    /**
+     * Checks the count of a batch GCD task.
+     *
+     * @param count The number of pairs or numbers.
+     * @return The task class.
+     * @throws IllegalArgumentException If the count is negative or exceeds
+     * `CalculateBatchGCD.MAX_COUNT`.
+     */
+    static Class<? extends Task> batchGCDTaskClass(long count) {
+        if (count < 0 || count > CalculateBatchGCD.MAX_COUNT) {
+            throw new IllegalArgumentException("Count " + count + " is not between 0 and " + CalculateBatchGCD.MAX_COUNT);
+        }
+        return CalculateBatchGCD.class;
+    }
+
+    /**
+     * Creates a batch GCD task over pseudo-random numbers, the same for the
+     * same seed: pairs of numbers below 2^63, or odd numbers below 2^62 whose
+     * GCD with the product of all the others is calculated.
+     *
+     * @param count The number of pairs or numbers.
+     * @param seed The seed of the numbers.
+     * @param allPairs Whether to calculate the GCD of every number with the
+     * others rather than of pairs.
+     * @return The task.
+     * @throws IllegalArgumentException If the count is negative or exceeds
+     * `CalculateBatchGCD.MAX_COUNT`.
+     */
+    static Task batchGCDTask(long count, long seed, boolean allPairs) {
+        batchGCDTaskClass(count);
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] first = new long[(int) count];
+        if (allPairs) {
+            for (int i = 0; i < first.length; i++) {
+                first[i] = random.nextLong() >>> 2 | 1;
+            }
+            return new CalculateBatchGCD(first);
+        }
+        long[] second = new long[(int) count];
+        for (int i = 0; i < first.length; i++) {
+            first[i] = random.nextLong() >>> 1;
+            second[i] = random.nextLong() >>> 1;
+        }
+        return new CalculateBatchGCD(first, second);
+    }
+
+    /**
+     * Gets the class of the tasks made from the parameters, without creating
+     * a task.
+     *
+     * @param parameters The parameters of the task.
+     * @return The task class, or null for a job type, whose job knows the
+     * class of its units.
+     * @throws IllegalArgumentException If the parameters are not valid for
+     * the type.
+     */
+    Class<? extends Task> taskClass(long[] parameters) {
+        return classifier == null ? null : classifier.apply(parameters);
+    }
+
+    /**
+     * Creates a new task of this type.
+     *
+     * @param parameters The parameters of the task.
+     * @return The task, ready to be sent to a worker.
+     */
+    Task newTask(long[] parameters) {
+        return factory.apply(parameters);
+    }
+
+    /**
+     * Creates a new job, if this is a job type.
+     *
+     * @param parameters The parameters of the job.
+     * @return The job, or null if tasks of this type are not units of a job.
+     */
+    TaskJob newJob(long[] parameters) {
+        return jobFactory == null ? null : jobFactory.apply(parameters);
+    }
+
+    /**
+     * Describes a task of this type.
+     *
+     * @param parameters The parameters of the task.
+     * @return The description shown to the workers.
+     */
+    String describe(long[] parameters) {
+        return describer.apply(parameters);
+    }
+
+    /**
+     * @return the name of the type in the task file
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return the number of parameters a task of this type takes
+     */
+    int getParameterCount() {
+        return parameterCount;
+    }
+}
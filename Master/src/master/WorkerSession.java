@@ -0,0 +1,489 @@
+package master;
+
+import contract.CFile;
+import contract.CSAuthenticator;
+import contract.CalculateBatchGCD;
+import contract.CalculateGCD;
+import contract.CalculatePi;
+import contract.CalculatePiHex;
+import contract.CalculatePrimes;
+import contract.CalculateSparsePrimes;
+import contract.MessageCodec;
+import contract.Task;
+import contract.TaskBatch;
+import contract.TaskList;
+import contract.TaskObject;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.crypto.SecretKey;
+import security.EcHandshake;
+import security.MessageCompression;
+import security.RecordChannel;
+import security.RecordChannel.Record;
+import security.RecordCipher;
+import security.SecurityUtil;
+import security.SessionChannel;
+import security.SessionTickets;
+
+/**
+ * The `WorkerSession` class holds the protocol state of one connected worker
+ * and answers each message received from the worker. It performs the mutual authentication, task list transfer,
+ * class file transfer, task distribution and credit assignment.
+ *
+ * <p>
+ * The class does not touch the network itself but writes its replies to the
+ * `SessionChannel` of the connection, so the same protocol logic is used by
+ * the blocking `Master` and by the selector based `NioMaster`. Handshake
+ * records must be handed over one at a time, but once the session key is
+ * established data records may be handled concurrently; every reply carries
+ * the request ID of the record it answers. Data records arrive already
+ * decrypted by the channel.
+ *
+ * <p>
+ * A worker that presents a valid session ticket is authenticated with the
+ * resumption secret inside the ticket instead of with RSA, and receives a
+ * fresh session key and a fresh ticket. A worker that sends an X25519 key
+ * share agrees on the session key with the master using X25519 instead, see
+ * `EcHandshake`.
+ *
+ */
+class WorkerSession {
+
+    /**
+     * the largest number of tasks leased or credited in one batch
+     */
+    static final int MAX_BATCH_SIZE = 1024;
+
+    /**
+     * the most primes of a result printed
+     */
+    private static final int MAX_PRIMES_SHOWN = 100;
+
+    /**
+     * the most digits of Pi printed
+     */
+    private static final int MAX_DIGITS_SHOWN = 100;
+
+    /**
+     * the most GCDs of a batch printed
+     */
+    private static final int MAX_GCDS_SHOWN = 20;
+
+    /**
+     * the least length of the verification string of a resumption, whose
+     * characters show that the worker holds the resumption secret
+     */
+    private static final int MIN_VERIFICATION_LENGTH = 64;
+
+    private final TaskRegistry registry;
+    private final SessionTickets tickets;
+    private final ClassCache classes = ClassCache.getShared();
+
+    private String CONTRACT_PACKAGE_LOCATION = "./build/classes/contract";
+//                "./contract";
+//                "./build/classes/contract";
+
+    private volatile SecretKey sessionKey;
+
+    /**
+     * Constructs a new `WorkerSession` serving the tasks of a registry.
+     *
+     * @param registry The registry of the tasks offered to the worker.
+     * @param tickets The issuer of the session tickets, shared by all
+     * sessions of the master.
+     */
+    WorkerSession(TaskRegistry registry, SessionTickets tickets) {
+        this.registry = registry;
+        this.tickets = tickets;
+    }
+
+    /**
+     * Handles one record received from the worker and writes the reply, if
+     * there is one.
+     *
+     * @param record The received record; a data record carries the plain
+     * message.
+     * @param channel The channel of the connection the reply is written to.
+     * @throws IOException If a requested task class file cannot be read or
+     * the reply cannot be written.
+     */
+    void handleRecord(Record record, SessionChannel channel) throws IOException {
+        if (record.getType() == RecordChannel.HANDSHAKE) {
+            // If the received record is a handshake, it carries a CSAuthenticator;
+            // perform the following actions for mutual authentication.
+            CSAuthenticator authenticator = (CSAuthenticator) MessageCodec.decode(record.getBody());
+            if (authenticator.getCipherSuite() != null && !RecordCipher.isSupported(authenticator.getCipherSuite())) {
+                // A worker asking for a suite it cannot have is refused rather than
+                // given a weaker one.
+                channel.writeRecord(new Record(RecordChannel.ALERT, record.getRequestId(), "Unsupported Cipher Suite".getBytes(StandardCharsets.UTF_8)));
+                return;
+            }
+            if (authenticator.getSessionTicket() != null) {
+                // A worker presenting a ticket resumes an earlier session.
+                resume(record, authenticator, channel);
+                return;
+            }
+            if (authenticator.getKeyShare() != null) {
+                // A worker sending a key share asks for the elliptic-curve handshake.
+                authenticateEc(record, authenticator, channel);
+                return;
+            }
+
+            // Decrypt the ciphered username using the public key of the user.
+            String decryptedUsername = decrypt(authenticator.getCipherUserName(), authenticator.getPlainUserName() + "-pub.ser");
+
+            // Decrypt the verification string using the private key of the server.
+            String decryptedVerificationString = decrypt(authenticator.getVerficationString(), "CENTRE-pri.ser");
+
+            // Check if the decrypted username matches the plain username in the authenticator.
+            if (authenticator.getPlainUserName().equals(decryptedUsername)) {
+
+                // Mutual authentication is in progress.
+                System.out.println("The mutual authentication of user " + decryptedUsername + "is progressing!");
+                System.out.println("The The verification string in cipher text: " + authenticator.getVerficationString());
+                System.out.println("The The verification string in plain text: " + decryptedVerificationString);
+
+                // Retrieve the public keys for the user.
+                Map<String, Key> keys = SecurityUtil.ReadinCachedKeys(decryptedUsername + "-pub.ser");
+                // Generate a session key for secure communication.
+
+                sessionKey = SecurityUtil.SecretKeyGen();
+
+                String cipherSuite = chooseCipherSuite(authenticator);
+
+                // Encrypt the session key using the user's public key.
+                String cipheredSessionKey = SecurityUtil.EncryptSessionKey(sessionKey, (PublicKey) keys.get(decryptedUsername));
+
+                // Create a master authenticator for the server.
+                CSAuthenticator masterAuthenticator = new CSAuthenticator();
+                masterAuthenticator.setPlainUserName("CENTRE");
+
+                // Encrypt the server's username using its private key.
+                masterAuthenticator.setCipherUserName(encrypt(masterAuthenticator.getPlainUserName(), "CENTRE-pri.ser"));
+
+                // Encrypt the verification string using the generated session key,
+                // together with the cipher suite asked for.
+                masterAuthenticator.setVerficationString(SecurityUtil.SymEncryptObj(
+                        RecordCipher.bindCipherSuite(decryptedVerificationString, authenticator.getCipherSuite()), sessionKey));
+
+                // Set the session key for the master authenticator.
+                masterAuthenticator.setSessionKey(cipheredSessionKey);
+                masterAuthenticator.setCipherSuite(cipherSuite);
+                masterAuthenticator.setCompression(chooseCompression(authenticator));
+
+                // Issue a ticket, so the worker can resume the session without RSA.
+                masterAuthenticator.setSessionTicket(tickets.issue(decryptedUsername, sessionKey));
+
+                System.out.println("The session Key in plain text: " + SecurityUtil.keytoB64String(sessionKey));
+                System.out.println("The session Key in cipher text: " + masterAuthenticator.getSessionKey());
+                System.out.println("The session cipher suite: " + cipherSuite);
+                System.out.println("The mutual Authentication is done!");
+                System.out.println("----------------------------------------------");
+
+                // Start the session before sending the master authenticator to the
+                // client for mutual authentication, so the records the client
+                // sends as soon as it is authenticated are read as data records.
+                channel.startSession(sessionKey, cipherSuite, masterAuthenticator.getCompression());
+                channel.writeRecord(new Record(RecordChannel.HANDSHAKE, record.getRequestId(), MessageCodec.encode(masterAuthenticator)));
+            } else {
+                // If the decrypted username doesn't match the plain username,
+                // respond with an "Invalid Username" message to the client.
+                channel.writeRecord(new Record(RecordChannel.ALERT, record.getRequestId(), "Invalid Username".getBytes(StandardCharsets.UTF_8)));
+            }
+        } else if (record.getType() == RecordChannel.DATA && sessionKey != null) {
+            // If the received record carries data, handle various actions based on its content.
+
+            // The channel has already decrypted the received message.
+            Object input = MessageCodec.decode(record.getBody());
+            if (input instanceof TaskList) {
+                // If the decrypted input is a TaskList, provide the requested page of the available
+                // compute-tasks to the worker, or only "not modified" if its list is still current.
+                TaskList taskList = registry.list((TaskList) input);
+
+                // Send the TaskList to the worker; the channel encrypts it.
+                channel.writeMessage(record.getRequestId(), taskList);
+                System.out.println("The list of available compute-tasks has been transferred to a worker.");
+            } else if (input instanceof String || input instanceof CFile) {
+                // If the decrypted input is a String, it represents the name of a task file to be transferred;
+                // a CFile without content names the task file and gives the hash of the copy the worker holds.
+                String msg = input instanceof CFile ? ((CFile) input).getFname() : (String) input;
+                String heldHash = input instanceof CFile ? ((CFile) input).getFhash() : null;
+                // Look the class file up in the class cache, which reads it only once.
+                ClassCache.Artifact artifact = classes.get(new File(CONTRACT_PACKAGE_LOCATION, msg));
+
+                if (artifact.getHash().equals(heldHash)) {
+                    // The worker's copy is current; confirm it without sending the content again.
+                    channel.writeMessage(record.getRequestId(), artifact.getReference());
+                    System.out.println("The task: " + msg + " is up to date on the worker, the transfer has been skipped.");
+                } else {
+                    // Send the CFile to the worker; it has been encrypted once for all
+                    // workers, so only its key is encrypted with the session key.
+                    channel.writeArtifact(record.getRequestId(), artifact.getSealed());
+                    System.out.println("The task: " + msg + " (" + artifact.getFile().getFbyte().length + " bytes) has been transferred to a worker.");
+                }
+            } else if (input instanceof TaskObject) {
+                // If the decrypted input is a TaskObject, handle task execution and response.
+                TaskObject taskObj = (TaskObject) input;
+                if (taskObj.getTObject() == null) {
+                    // If the task object does not contain a task instance, it needs to be initialized.
+
+                    // Get the task based on the task ID; a job that is done has none,
+                    // which the worker is told by a task object without a task.
+                    Task task = getTask(taskObj.getTaskID()).newTask();
+                    taskObj.setTObject(task);
+                    if (task == null) {
+                        System.out.println("The task: " + getTask(taskObj.getTaskID()).getClassName() + " is done, no more work has been leased to a worker.");
+                    }
+
+                    // Send the initialized task object to the worker.
+                    channel.writeMessage(record.getRequestId(), taskObj);
+                } else {
+                    // If the task object already contains a task instance, it represents a completed task.
+                    System.out.println("The task: " + getTask(taskObj.getTaskID()).getClassName() + " has been performed by the worker, the result is: " + getFormattedResultToPrint(taskObj));
+                    getTask(taskObj.getTaskID()).complete(taskObj.getTObject());
+                    // Determine and assign credit to the worker.
+                    taskObj.setCredit(getTask(taskObj.getTaskID()).getCredit());
+                    System.out.println("Award a credit of " + taskObj.getCredit() + " to a worker.");
+
+                    // Send the task object with the credit information to the worker.
+                    channel.writeMessage(record.getRequestId(), taskObj);
+                    System.out.println("----------------------------------------------");
+                }
+            } else if (input instanceof TaskBatch) {
+                // If the decrypted input is a TaskBatch, lease or credit several tasks at once.
+                TaskBatch batch = (TaskBatch) input;
+                if (batch.getTaskObjects().isEmpty()) {
+                    // An empty batch is a lease request; fill it with up to the requested number of tasks,
+                    // fewer if a job runs out of work. It stays empty once the job is done.
+                    TaskDescriptor descriptor = getTask(batch.getTaskID());
+                    int size = Math.max(1, Math.min(batch.getBatchSize(), MAX_BATCH_SIZE));
+                    List<TaskObject> taskObjects = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        Task task = descriptor.newTask();
+                        if (task == null) {
+                            break;
+                        }
+                        TaskObject taskObj = new TaskObject();
+                        taskObj.setTaskID(batch.getTaskID());
+                        taskObj.setTObject(task);
+                        taskObjects.add(taskObj);
+                    }
+                    batch.setTaskObjects(taskObjects);
+                    System.out.println("A batch of " + taskObjects.size() + " tasks: " + descriptor.getClassName() + " has been leased to a worker.");
+                } else {
+                    // A filled batch carries the results; determine and assign the credit of every task.
+                    if (batch.getTaskObjects().size() > MAX_BATCH_SIZE) {
+                        throw new IOException("Batch too large: " + batch.getTaskObjects().size());
+                    }
+                    for (TaskObject taskObj : batch.getTaskObjects()) {
+                        getTask(taskObj.getTaskID()).complete(taskObj.getTObject());
+                        taskObj.setCredit(getTask(taskObj.getTaskID()).getCredit());
+                    }
+                    System.out.println("A batch of " + batch.getTaskObjects().size() + " tasks: " + getTask(batch.getTaskID()).getClassName()
+                            + " has been performed by the worker, the first result is: " + getFormattedResultToPrint(batch.getTaskObjects().get(0)));
+                    System.out.println("Award a credit of " + batch.getTotalCredit() + " to a worker.");
+                    System.out.println("----------------------------------------------");
+                }
+                channel.writeMessage(record.getRequestId(), batch);
+            }
+        }
+    }
+
+    /**
+     * Resumes the session of a worker presenting a session ticket. The worker
+     * shows that it holds the resumption secret of the ticket by encrypting
+     * its verification string with it: the string must decrypt to at least
+     * `MIN_VERIFICATION_LENGTH` characters of a random verification string,
+     * which ciphertext made without the secret does with a chance of about
+     * 2^-128. The master proves that it could open the ticket by returning
+     * the verification string under the new session key, which it sends
+     * wrapped with the resumption secret. The new ticket expires with the one
+     * presented, so resuming never extends a session beyond the lifetime of
+     * its full handshake.
+     */
+    private void resume(Record record, CSAuthenticator authenticator, SessionChannel channel) throws IOException {
+        SessionTickets.Ticket ticket = tickets.open(authenticator.getSessionTicket());
+        byte[] verificationString = null;
+        if (ticket != null && ticket.getUserName().equals(authenticator.getPlainUserName())) {
+            verificationString = SecurityUtil.SymDecrypt(authenticator.getVerficationString(), ticket.getSecret());
+        }
+        if (!SecurityUtil.isAlphaNumericString(verificationString, MIN_VERIFICATION_LENGTH)) {
+            // The ticket is unknown, expired or does not belong to the user, or
+            // the worker does not hold its secret; the worker falls back to the
+            // full handshake.
+            channel.writeRecord(new Record(RecordChannel.ALERT, record.getRequestId(), "Invalid Ticket".getBytes(StandardCharsets.UTF_8)));
+            return;
+        }
+
+        sessionKey = SecurityUtil.SecretKeyGen();
+        String cipherSuite = chooseCipherSuite(authenticator);
+
+        CSAuthenticator masterAuthenticator = new CSAuthenticator();
+        masterAuthenticator.setPlainUserName("CENTRE");
+        String returned = RecordCipher.bindCipherSuite(new String(verificationString, StandardCharsets.UTF_8), authenticator.getCipherSuite());
+        masterAuthenticator.setVerficationString(SecurityUtil.SymEncrypt(returned.getBytes(StandardCharsets.UTF_8), sessionKey));
+        masterAuthenticator.setSessionKey(SecurityUtil.WrapSessionKey(sessionKey, ticket.getSecret()));
+        masterAuthenticator.setCipherSuite(cipherSuite);
+        masterAuthenticator.setCompression(chooseCompression(authenticator));
+        masterAuthenticator.setSessionTicket(tickets.issue(ticket.getUserName(), sessionKey, ticket.getExpiry()));
+
+        System.out.println("The session of user " + ticket.getUserName() + " has been resumed.");
+        System.out.println("----------------------------------------------");
+
+        channel.startSession(sessionKey, cipherSuite, masterAuthenticator.getCompression());
+        channel.writeRecord(new Record(RecordChannel.HANDSHAKE, record.getRequestId(), MessageCodec.encode(masterAuthenticator)));
+    }
+
+    /**
+     * Performs the elliptic-curve handshake. The session key is agreed from
+     * the key shares and the X25519 identity keys of worker and master, so
+     * only the real worker can use it; the master proves its identity by
+     * returning the verification string under that key.
+     */
+    private void authenticateEc(Record record, CSAuthenticator authenticator, SessionChannel channel) throws IOException {
+        String userName = authenticator.getPlainUserName();
+        Map<String, Key> userKeys = SecurityUtil.ReadinCachedKeys(EcHandshake.publicKeyFile(userName));
+        if (userKeys == null || userKeys.get(userName) == null) {
+            channel.writeRecord(new Record(RecordChannel.ALERT, record.getRequestId(), "Invalid Username".getBytes(StandardCharsets.UTF_8)));
+            return;
+        }
+
+        String cipherSuite = chooseCipherSuite(authenticator);
+        CSAuthenticator masterAuthenticator = new CSAuthenticator();
+        masterAuthenticator.setPlainUserName("CENTRE");
+        masterAuthenticator.setCipherSuite(cipherSuite);
+        masterAuthenticator.setCompression(chooseCompression(authenticator));
+        try {
+            KeyPair keyShare = EcHandshake.newKeyShare();
+            masterAuthenticator.setKeyShare(EcHandshake.encodeKeyShare(keyShare));
+            Map<String, Key> masterKeys = SecurityUtil.ReadinCachedKeys(EcHandshake.privateKeyFile("CENTRE"));
+            sessionKey = EcHandshake.deriveMasterKey((PrivateKey) masterKeys.get("CENTRE"), (PublicKey) userKeys.get(userName),
+                    keyShare, authenticator.getKeyShare(),
+                    userName, authenticator.getVerficationString(), authenticator.getKeyShare(), masterAuthenticator.getKeyShare(), cipherSuite,
+                    masterAuthenticator.getCompression(), authenticator.getCipherSuite());
+        } catch (GeneralSecurityException ex) {
+            throw new IOException(ex);
+        }
+        masterAuthenticator.setVerficationString(SecurityUtil.SymEncryptObj(authenticator.getVerficationString(), sessionKey));
+        masterAuthenticator.setSessionTicket(tickets.issue(userName, sessionKey));
+
+        System.out.println("The key agreement with user " + userName + " is done (X25519)!");
+        System.out.println("The session cipher suite: " + cipherSuite);
+        System.out.println("----------------------------------------------");
+
+        channel.startSession(sessionKey, cipherSuite, masterAuthenticator.getCompression());
+        channel.writeRecord(new Record(RecordChannel.HANDSHAKE, record.getRequestId(), MessageCodec.encode(masterAuthenticator)));
+    }
+
+    /**
+     * Picks the cipher suite asked for by the worker, which has been checked
+     * to be supported; a worker asking for none gets the whole-message AES
+     * suite. The suite asked for is bound to the verification string or the
+     * key of every handshake, so a worker notices if it was removed.
+     */
+    private String chooseCipherSuite(CSAuthenticator authenticator) {
+        return authenticator.getCipherSuite() != null ? authenticator.getCipherSuite() : RecordCipher.AES;
+    }
+
+    /**
+     * Accepts the compression offered by the worker if it is supported and
+     * not switched off with `-Dmaster.compression=false`; otherwise the
+     * session is not compressed.
+     */
+    private String chooseCompression(CSAuthenticator authenticator) {
+        return MessageCompression.isSupported(authenticator.getCompression())
+                && Boolean.parseBoolean(System.getProperty("master.compression", "true"))
+                ? authenticator.getCompression() : null;
+    }
+
+    private String decrypt(String cipherText, String keyFile) {
+        Map<String, Key> keys = SecurityUtil.ReadinCachedKeys(keyFile);
+        String decryptedRandomBase64String = null;
+        if (keyFile.contains("pri")) {
+            decryptedRandomBase64String = SecurityUtil.asyDecrypt(cipherText, (PrivateKey) keys.get(keyFile.split("-")[0]));
+        } else {
+            decryptedRandomBase64String = SecurityUtil.asyDecrypt(cipherText, (PublicKey) keys.get(keyFile.split("-")[0]));
+        }
+        return decryptedRandomBase64String;
+    }
+
+    private String encrypt(String username, String keyFile) {
+        Map<String, Key> keys = SecurityUtil.ReadinCachedKeys(keyFile);
+        String encryptedRandomBase64String = null;
+        if (keyFile.contains("pri")) {
+            encryptedRandomBase64String = SecurityUtil.asyEncrypt(username, (PrivateKey) keys.get(keyFile.split("-")[0]));
+        } else {
+            encryptedRandomBase64String = SecurityUtil.asyEncrypt(username, (PublicKey) keys.get(keyFile.split("-")[0]));
+        }
+        return encryptedRandomBase64String;
+    }
+
+    /**
+     * Looks up the descriptor of a task requested by the worker.
+     *
+     * @param taskID The ID of the task.
+     * @return The task descriptor.
+     * @throws IOException If there is no task with this ID.
+     */
+    private TaskDescriptor getTask(Integer taskID) throws IOException {
+        TaskDescriptor descriptor = taskID == null ? null : registry.get(taskID);
+        if (descriptor == null) {
+            throw new IOException("Unknown task: " + taskID);
+        }
+        return descriptor;
+    }
+
+    private String getFormattedResultToPrint(TaskObject taskObj) {
+        if (taskObj.getTObject() instanceof CalculatePi) {
+            BigDecimal pi = (BigDecimal) taskObj.getTObject().getResult();
+            if (pi.scale() <= MAX_DIGITS_SHOWN) {
+                return pi.toString();
+            }
+            // A long result is shown by its first digits only.
+            return pi.round(new MathContext(MAX_DIGITS_SHOWN + 1, RoundingMode.DOWN)) + "... (" + pi.scale() + " digits)";
+        } else if (taskObj.getTObject() instanceof CalculatePrimes || taskObj.getTObject() instanceof CalculateSparsePrimes) {
+            long[] result = (long[]) taskObj.getTObject().getResult();
+            StringBuilder sb = new StringBuilder(String.format("The number of primes is: %d, and they are: ", result.length));
+            // A large range is shown by its first primes only.
+            int shown = Math.min(result.length, MAX_PRIMES_SHOWN);
+            for (int i = 0; i < shown; i++) {
+                sb.append(result[i]);
+                if (i < shown - 1) {
+                    sb.append(", ");
+                } else if (shown < result.length) {
+                    sb.append(", ...");
+                } else {
+                    sb.append(".");
+                }
+            }
+            return sb.toString();
+        } else if (taskObj.getTObject() instanceof CalculateBatchGCD) {
+            long[] result = (long[]) taskObj.getTObject().getResult();
+            StringBuilder sb = new StringBuilder(String.format("The number of GCDs is: %d, and they start with: ", result.length));
+            int shown = Math.min(result.length, MAX_GCDS_SHOWN);
+            for (int i = 0; i < shown; i++) {
+                sb.append(result[i]).append(i < shown - 1 ? ", " : shown < result.length ? ", ..." : ".");
+            }
+            return sb.toString();
+        } else if (taskObj.getTObject() instanceof CalculatePiHex) {
+            CalculatePiHex piHex = (CalculatePiHex) taskObj.getTObject();
+            return String.format("The hexadecimal digits of Pi at position %d are: %s", piHex.getPosition(), piHex.getResult());
+        } else if (taskObj.getTObject() instanceof CalculateGCD) {
+            CalculateGCD gcd = (CalculateGCD) taskObj.getTObject();
+            return String.format("The Greatest Common Divisor of %d and %d is %d", gcd.getFirst(), gcd.getSecond(), gcd.getResult());
+        }
+        return "";
+    }
+}
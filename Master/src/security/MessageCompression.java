@@ -0,0 +1,147 @@
+package security;
+
+import contract.MessageCodec;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * The `MessageCompression` class compresses the encoded messages of one
+ * session with Deflate before they are encrypted. It is used when both sides
+ * have agreed on compression during the handshake.
+ *
+ * <p>
+ * Messages shorter than the threshold, and messages that do not get smaller,
+ * are sent as they are. A compressed message starts with
+ * `MessageCodec.DEFLATE_MAGIC`, so `MessageCodec.decode` recognizes and
+ * inflates it on the receiving side. The buffers and the deflater are reused
+ * from message to message; callers hold their write lock while writing a
+ * message. The native memory of the deflater is released together with the
+ * instance.
+ *
+ */
+public class MessageCompression {
+
+    /**
+     * name of the Deflate compression in the handshake
+     */
+    public static final String DEFLATE = "deflate";
+
+    /**
+     * default number of bytes below which a message is not compressed
+     */
+    public static final int DEFAULT_THRESHOLD = 256;
+
+    /**
+     * largest buffer kept for the next message after a large one
+     */
+    private static final int MAX_RETAINED = 1024 * 1024;
+
+    private final int threshold;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Buffer encoded = new Buffer();
+    private byte[] compressed = new byte[0];
+
+    /**
+     * Constructs a new `MessageCompression` instance.
+     *
+     * @param threshold The number of bytes below which a message is not
+     * compressed.
+     */
+    public MessageCompression(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Creates the compression stage of a session.
+     *
+     * @param compression The name of the compression chosen in the
+     * handshake, may be null.
+     * @return The compression stage, or null if the session is not
+     * compressed.
+     */
+    public static MessageCompression create(String compression) {
+        if (!isSupported(compression)) {
+            return null;
+        }
+        return new MessageCompression(Integer.getInteger("compression.threshold", DEFAULT_THRESHOLD));
+    }
+
+    /**
+     * Checks whether a compression is supported.
+     *
+     * @param compression The name of the compression, may be null.
+     * @return True if the compression can be used for a session.
+     */
+    public static boolean isSupported(String compression) {
+        return DEFLATE.equals(compression);
+    }
+
+    /**
+     * Encodes a message and writes it, compressed if that makes it smaller.
+     *
+     * @param message The message object.
+     * @param out The stream to write to.
+     * @throws IOException If the message cannot be written.
+     */
+    public void write(Object message, OutputStream out) throws IOException {
+        encoded.count = 0;
+        MessageCodec.encode(message, encoded);
+        int length = encoded.count;
+        try {
+            if (length < threshold) {
+                out.write(encoded.bytes, 0, length);
+                return;
+            }
+            // Compress into at most length - 1 bytes, leaving room for the marker.
+            if (compressed.length < length) {
+                compressed = new byte[length];
+            }
+            deflater.reset();
+            deflater.setInput(encoded.bytes, 0, length);
+            deflater.finish();
+            int size = 0;
+            while (!deflater.finished() && size < length - 1) {
+                size += deflater.deflate(compressed, size, length - 1 - size);
+            }
+            if (!deflater.finished()) {
+                out.write(encoded.bytes, 0, length);
+                return;
+            }
+            out.write(MessageCodec.DEFLATE_MAGIC);
+            out.write(compressed, 0, size);
+        } finally {
+            if (encoded.bytes.length > MAX_RETAINED) {
+                encoded.bytes = new byte[0];
+                compressed = new byte[0];
+            }
+        }
+    }
+
+    /**
+     * An unsynchronized, growing output buffer.
+     */
+    private static final class Buffer extends OutputStream {
+
+        private byte[] bytes = new byte[1024];
+        private int count;
+
+        @Override
+        public void write(int b) {
+            if (count == bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(1024, bytes.length * 2));
+            }
+            bytes[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int offset, int length) {
+            if (length > bytes.length - count) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, count + length));
+            }
+            System.arraycopy(b, offset, bytes, count, length);
+            count += length;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package security;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The `SealedArtifact` class holds a message that is the same for every
+ * worker, such as a task class file, encrypted once under a content key of its
+ * own.
+ *
+ * <p>
+ * The message is encoded, compressed and sealed with AES-GCM when the
+ * artifact is created. Sending it to a worker only seals the small content key
+ * under the session key, see `RecordCipher.sealArtifact`; the ciphertext of
+ * the message itself is written as it is, so the cost of a delivery does not
+ * grow with the number of workers. The ciphertext is kept in a read-only
+ * direct buffer that all connections write from.
+ *
+ */
+public class SealedArtifact {
+
+    private static final int NONCE_LENGTH = 12;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<Cipher> GCM_CIPHER = ThreadLocal.withInitial(() -> SecurityUtil.createCipher("AES/GCM/NoPadding"));
+
+    private final Object message;
+    private final SecretKey contentKey;
+    private final byte[] sealed;
+    private final ByteBuffer buffer;
+
+    private SealedArtifact(Object message, SecretKey contentKey, byte[] sealed) {
+        this.message = message;
+        this.contentKey = contentKey;
+        this.sealed = sealed;
+        this.buffer = ByteBuffer.allocateDirect(sealed.length).put(sealed).flip().asReadOnlyBuffer();
+    }
+
+    /**
+     * Encodes a message and encrypts it under a new content key.
+     *
+     * @param message The message object; it must not be modified afterwards.
+     * @return The sealed artifact.
+     */
+    public static SealedArtifact seal(Object message) {
+        try {
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            new MessageCompression(MessageCompression.DEFAULT_THRESHOLD).write(message, encoded);
+            SecretKey contentKey = SecurityUtil.SecretKeyGen();
+            byte[] nonce = new byte[NONCE_LENGTH];
+            RANDOM.nextBytes(nonce);
+            Cipher cipher = GCM_CIPHER.get();
+            cipher.init(Cipher.ENCRYPT_MODE, contentKey, new GCMParameterSpec(RecordCipher.TAG_BYTES * 8, nonce));
+            byte[] sealed = new byte[NONCE_LENGTH + cipher.getOutputSize(encoded.size())];
+            System.arraycopy(nonce, 0, sealed, 0, NONCE_LENGTH);
+            cipher.doFinal(encoded.toByteArray(), 0, encoded.size(), sealed, NONCE_LENGTH);
+            return new SealedArtifact(message, contentKey, sealed);
+        } catch (IOException | GeneralSecurityException ex) {
+            System.out.println("Exception in seal(): " + ex.getMessage());
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Decrypts the ciphertext of an artifact with its content key.
+     *
+     * @param contentKey The encoded content key.
+     * @param body The buffer holding the ciphertext.
+     * @param offset The offset of the ciphertext in the buffer.
+     * @param length The length of the ciphertext.
+     * @return The encoded message.
+     * @throws IOException If the ciphertext fails the integrity check.
+     */
+    static byte[] open(byte[] contentKey, byte[] body, int offset, int length) throws IOException {
+        if (length < NONCE_LENGTH + RecordCipher.TAG_BYTES) {
+            throw new IOException("Artifact too short");
+        }
+        Cipher cipher = GCM_CIPHER.get();
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(contentKey, "AES"),
+                    new GCMParameterSpec(RecordCipher.TAG_BYTES * 8, body, offset, NONCE_LENGTH));
+            return cipher.doFinal(body, offset + NONCE_LENGTH, length - NONCE_LENGTH);
+        } catch (GeneralSecurityException ex) {
+            throw new IOException("Artifact failed the integrity check", ex);
+        }
+    }
+
+    /**
+     * Gets the message of the artifact, for sessions that cannot carry
+     * sealed artifacts.
+     *
+     * @return The message object.
+     */
+    public Object getMessage() {
+        return message;
+    }
+
+    /**
+     * Gets the content key the message is encrypted with.
+     *
+     * @return The content key.
+     */
+    SecretKey getContentKey() {
+        return contentKey;
+    }
+
+    /**
+     * Gets the ciphertext: the nonce followed by the sealed message.
+     *
+     * @return The ciphertext; it is shared and must not be modified.
+     */
+    byte[] getSealed() {
+        return sealed;
+    }
+
+    /**
+     * Gets the ciphertext as a buffer of its own, positioned at the start.
+     *
+     * @return A read-only view of the shared direct buffer.
+     */
+    public ByteBuffer getBuffer() {
+        return buffer.duplicate();
+    }
+
+    /**
+     * Gets the length of the ciphertext.
+     *
+     * @return The number of bytes written for the artifact after its key.
+     */
+    public int length() {
+        return sealed.length;
+    }
+}
@@ -0,0 +1,836 @@
+package contract;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * The `MessageCodec` class converts the messages exchanged by master and
+ * worker to a compact binary form. Every value starts with a one-byte type
+ * tag, numbers are written as variable-length integers and no class
+ * descriptors are written, so a `TaskObject` costs a few bytes plus its task
+ * instead of several hundred bytes of Java serialization metadata.
+ *
+ * <p>
+ * `TaskList`, `CFile`, `TaskObject`, `TaskBatch`, `CSAuthenticator` and
+ * strings have a compact form. A task implementing `CompactTask` is written
+ * as its class name, once per message, followed by its own fields; any other
+ * task is written with Java serialization. Java serialization is only read
+ * in the task slot of a `TaskObject`, and through a filter that admits task
+ * classes and the types of their fields within bounds of depth and size;
+ * messages are decoded before the peer is authenticated, so nothing else is
+ * ever deserialized. Messages compressed with Deflate behind `DEFLATE_MAGIC`
+ * are accepted by `decode` as well.
+ *
+ * <p>
+ * Task classes are looked up with the class loader of the codec unless
+ * `decode` is given another one, such as the loader a worker has defined a
+ * downloaded task class with.
+ *
+ */
+public class MessageCodec {
+
+    /**
+     * first byte of every message in the compact form
+     */
+    public static final int MAGIC = 0xC1;
+
+    /**
+     * first byte of a message in the compact form compressed with Deflate
+     */
+    public static final int DEFLATE_MAGIC = 0xC2;
+
+    /**
+     * largest message accepted after inflating
+     */
+    private static final int MAX_INFLATED_LENGTH = 64 * 1024 * 1024;
+
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    /**
+     * bounds of a task read with Java serialization: the nesting depth, the
+     * number of objects, the length of the serialized form and of any array
+     */
+    private static final int MAX_SERIALIZED_DEPTH = 16;
+    private static final int MAX_SERIALIZED_REFERENCES = 10000;
+    private static final int MAX_SERIALIZED_LENGTH = 4 * 1024 * 1024;
+    private static final int MAX_SERIALIZED_ARRAY_LENGTH = 1024 * 1024;
+
+    /**
+     * value types a serialized task may hold besides the declared types of
+     * its fields
+     */
+    private static final Set<Class<?>> SERIALIZED_VALUE_TYPES = Set.of(String.class, Boolean.class, Character.class,
+            Number.class, Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class,
+            BigInteger.class, BigDecimal.class);
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int TASK_LIST = 2;
+    private static final int CFILE = 3;
+    private static final int TASK_OBJECT = 4;
+    private static final int TASK_BATCH = 5;
+    private static final int CS_AUTHENTICATOR = 6;
+    private static final int COMPACT_TASK = 7;
+    private static final int SERIALIZED = 8;
+
+    private static final ClassLoader CLASS_LOADER = MessageCodec.class.getClassLoader();
+
+    private static final Map<String, Constructor<?>> CONSTRUCTORS = new ConcurrentHashMap<>();
+
+    private static final ClassValue<Constructor<?>> TASK_CONSTRUCTORS = new ClassValue<>() {
+        @Override
+        protected Constructor<?> computeValue(Class<?> type) {
+            try {
+                return type.getConstructor();
+            } catch (NoSuchMethodException ex) {
+                return null;
+            }
+        }
+    };
+
+    private final List<String> classNames = new ArrayList<>();
+    private final ClassLoader classLoader;
+
+    private MessageCodec(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Writes a message in the compact form.
+     *
+     * @param message The message object.
+     * @param out The stream to write to; it is flushed but not closed.
+     * @throws IOException If the message cannot be written.
+     */
+    public static void encode(Object message, OutputStream out) throws IOException {
+        // The record streams buffer on their own, so the message is written
+        // straight into them.
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeByte(MAGIC);
+        new MessageCodec(CLASS_LOADER).writeValue(data, message);
+        data.flush();
+    }
+
+    /**
+     * Converts a message to a byte array in the compact form.
+     *
+     * @param message The message object.
+     * @return The encoded message.
+     */
+    public static byte[] encode(Object message) {
+        Buffer buffer = new Buffer(64);
+        try {
+            DataOutputStream data = new DataOutputStream(buffer);
+            data.writeByte(MAGIC);
+            new MessageCodec(CLASS_LOADER).writeValue(data, message);
+        } catch (IOException ex) {
+            System.out.println("Exception in encode(): " + ex.getMessage());
+            throw new RuntimeException(ex);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Converts a byte array written by `encode` back to the message.
+     *
+     * @param bytes The encoded message.
+     * @return The message object.
+     */
+    public static Object decode(byte[] bytes) {
+        return decode(bytes, CLASS_LOADER);
+    }
+
+    /**
+     * Converts a byte array written by `encode` back to the message, looking
+     * task classes up with a given class loader.
+     *
+     * @param bytes The encoded message.
+     * @param classLoader The class loader of the task classes.
+     * @return The message object.
+     */
+    public static Object decode(byte[] bytes, ClassLoader classLoader) {
+        try {
+            if (bytes.length > 0 && (bytes[0] & 0xFF) == DEFLATE_MAGIC) {
+                bytes = inflate(bytes);
+            }
+            Input data = new Input(bytes);
+            if (data.readUnsignedByte() != MAGIC) {
+                throw new IOException("Unknown message format");
+            }
+            return new MessageCodec(classLoader).readValue(data);
+        } catch (IOException | ClassNotFoundException ex) {
+            System.out.println("Exception in decode(): " + ex.getMessage());
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes) throws IOException {
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(bytes, 1, bytes.length - 1);
+        Buffer buffer = new Buffer(Math.max(64, bytes.length * 4));
+        byte[] chunk = new byte[8192];
+        try {
+            while (!inflater.finished()) {
+                int length = inflater.inflate(chunk);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated compressed message");
+                }
+                if (buffer.count + length > MAX_INFLATED_LENGTH) {
+                    throw new IOException("Compressed message too large");
+                }
+                buffer.write(chunk, 0, length);
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+        // A compressed message holds exactly one message in the compact form.
+        if (buffer.count == 0 || (buffer.bytes[0] & 0xFF) != MAGIC) {
+            throw new IOException("Unknown compressed message format");
+        }
+        return buffer.toByteArray();
+    }
+
+    private void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof TaskObject) {
+            out.writeByte(TASK_OBJECT);
+            writeTaskObject(out, (TaskObject) value);
+        } else if (value instanceof TaskBatch) {
+            TaskBatch batch = (TaskBatch) value;
+            out.writeByte(TASK_BATCH);
+            writeVarLong(out, batch.getTaskID());
+            writeVarLong(out, batch.getBatchSize());
+            List<TaskObject> taskObjects = batch.getTaskObjects();
+            writeVarLong(out, taskObjects == null ? -1 : taskObjects.size());
+            if (taskObjects != null) {
+                for (TaskObject taskObject : taskObjects) {
+                    writeTaskObject(out, taskObject);
+                }
+            }
+        } else if (value instanceof TaskList) {
+            TaskList taskList = (TaskList) value;
+            out.writeByte(TASK_LIST);
+            writeStrings(out, taskList.getAvailableTasks());
+            writeStrings(out, taskList.getTaskClassName());
+            writeInts(out, taskList.getTaskIDs());
+            writeVarLong(out, taskList.getVersion());
+            out.writeBoolean(taskList.isNotModified());
+            writeVarLong(out, taskList.getOffset());
+            writeVarLong(out, taskList.getLimit());
+            writeVarLong(out, taskList.getTotalTasks());
+            writeStrings(out, taskList.getClassFilter());
+        } else if (value instanceof CFile) {
+            CFile cFile = (CFile) value;
+            out.writeByte(CFILE);
+            writeString(out, cFile.getFname());
+            writeBytes(out, cFile.getFbyte());
+            writeString(out, cFile.getFhash());
+        } else if (value instanceof CSAuthenticator) {
+            CSAuthenticator authenticator = (CSAuthenticator) value;
+            out.writeByte(CS_AUTHENTICATOR);
+            writeString(out, authenticator.getPlainUserName());
+            writeString(out, authenticator.getCipherUserName());
+            writeString(out, authenticator.getVerficationString());
+            writeString(out, authenticator.getSessionKey());
+            writeString(out, authenticator.getCipherSuite());
+            writeString(out, authenticator.getSessionTicket());
+            writeString(out, authenticator.getKeyShare());
+            writeString(out, authenticator.getCompression());
+        } else if (value instanceof CompactTask) {
+            out.writeByte(COMPACT_TASK);
+            writeClassName(out, value.getClass().getName());
+            ((CompactTask) value).writeTask(out);
+        } else {
+            throw new IOException("Cannot encode " + value.getClass().getName());
+        }
+    }
+
+    private Object readValue(DataInput in) throws IOException, ClassNotFoundException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case TASK_OBJECT:
+                return readTaskObject(in);
+            case TASK_BATCH: {
+                TaskBatch batch = new TaskBatch((int) readVarLong(in), (int) readVarLong(in));
+                int count = (int) readVarLong(in);
+                if (count < 0) {
+                    batch.setTaskObjects(null);
+                }
+                for (int i = 0; i < count; i++) {
+                    batch.getTaskObjects().add(readTaskObject(in));
+                }
+                return batch;
+            }
+            case TASK_LIST: {
+                TaskList taskList = new TaskList();
+                taskList.setAvailableTasks(readStrings(in));
+                taskList.setTaskClassName(readStrings(in));
+                taskList.setTaskIDs(readInts(in));
+                taskList.setVersion(readVarLong(in));
+                taskList.setNotModified(in.readBoolean());
+                taskList.setOffset((int) readVarLong(in));
+                taskList.setLimit((int) readVarLong(in));
+                taskList.setTotalTasks((int) readVarLong(in));
+                taskList.setClassFilter(readStrings(in));
+                return taskList;
+            }
+            case CFILE:
+                return new CFile(readString(in), readBytes(in), readString(in));
+            case CS_AUTHENTICATOR: {
+                CSAuthenticator authenticator = new CSAuthenticator(readString(in), readString(in), readString(in), readString(in));
+                authenticator.setCipherSuite(readString(in));
+                authenticator.setSessionTicket(readString(in));
+                authenticator.setKeyShare(readString(in));
+                authenticator.setCompression(readString(in));
+                return authenticator;
+            }
+            case COMPACT_TASK:
+                return readCompactTask(in);
+            default:
+                throw new IOException("Unknown type tag " + tag);
+        }
+    }
+
+    private void writeTaskObject(DataOutput out, TaskObject taskObject) throws IOException {
+        writeNullableInt(out, taskObject.getTaskID());
+        writeNullableInt(out, taskObject.getCredit());
+        Task task = taskObject.getTObject();
+        if (task == null || task instanceof CompactTask) {
+            writeValue(out, task);
+        } else {
+            out.writeByte(SERIALIZED);
+            writeBytes(out, serialize(task));
+        }
+    }
+
+    private TaskObject readTaskObject(DataInput in) throws IOException, ClassNotFoundException {
+        TaskObject taskObject = new TaskObject();
+        taskObject.setTaskID(readNullableInt(in));
+        taskObject.setCredit(readNullableInt(in));
+        // Only here, in the task slot, may a value be in Java serialization form.
+        Object task;
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case NULL:
+                task = null;
+                break;
+            case COMPACT_TASK:
+                task = readCompactTask(in);
+                break;
+            case SERIALIZED:
+                task = deserializeTask(readBytes(in), classLoader);
+                break;
+            default:
+                throw new IOException("Unknown task tag " + tag);
+        }
+        if (task != null && !(task instanceof Task)) {
+            throw new IOException("Not a task: " + task.getClass().getName());
+        }
+        taskObject.setTObject((Task) task);
+        return taskObject;
+    }
+
+    /**
+     * Writes a class name the first time it occurs in the message and its
+     * index every further time, so a batch names its task class once.
+     */
+    private void writeClassName(DataOutput out, String className) throws IOException {
+        int index = classNames.indexOf(className);
+        writeVarLong(out, index + 1);
+        if (index < 0) {
+            classNames.add(className);
+            writeString(out, className);
+        }
+    }
+
+    private Object readCompactTask(DataInput in) throws IOException, ClassNotFoundException {
+        int index = (int) readVarLong(in) - 1;
+        String className;
+        if (index < 0) {
+            className = readString(in);
+            classNames.add(className);
+        } else if (index < classNames.size()) {
+            className = classNames.get(index);
+        } else {
+            throw new IOException("Unknown class index " + index);
+        }
+        CompactTask task;
+        try {
+            task = (CompactTask) taskConstructor(className).newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new IOException("Cannot create " + className, ex);
+        }
+        task.readTask(in);
+        return task;
+    }
+
+    /**
+     * Gets the constructor of a task class. Classes of the codec's own class
+     * loader are looked up by name only the first time they are met; the
+     * constructors of classes from other loaders are kept with the class.
+     */
+    private Constructor<?> taskConstructor(String className) throws IOException, ClassNotFoundException {
+        boolean shared = classLoader == CLASS_LOADER;
+        Constructor<?> constructor = shared ? CONSTRUCTORS.get(className) : null;
+        if (constructor == null) {
+            Class<?> taskClass = Class.forName(className, false, classLoader);
+            if (!CompactTask.class.isAssignableFrom(taskClass)) {
+                throw new IOException("Not a compact task: " + className);
+            }
+            constructor = TASK_CONSTRUCTORS.get(taskClass);
+            if (constructor == null) {
+                throw new IOException("Cannot create " + className);
+            }
+            if (shared) {
+                CONSTRUCTORS.put(className, constructor);
+            }
+        }
+        return constructor;
+    }
+
+    /**
+     * Writes a signed number as a variable-length integer of one to ten
+     * bytes; small positive and negative numbers take a single byte.
+     *
+     * @param out The output to write to.
+     * @param value The number to write.
+     * @throws IOException If the number cannot be written.
+     */
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            out.writeByte((int) (zigZag & 0x7F) | 0x80);
+            zigZag >>>= 7;
+        }
+        out.writeByte((int) zigZag);
+    }
+
+    /**
+     * Reads a number written by `writeVarLong`.
+     *
+     * @param in The input to read from.
+     * @return The number read.
+     * @throws IOException If the number cannot be read.
+     */
+    public static long readVarLong(DataInput in) throws IOException {
+        long zigZag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    /**
+     * Writes a string, which may be null, as its length and UTF-8 bytes.
+     *
+     * @param out The output to write to.
+     * @param value The string to write.
+     * @throws IOException If the string cannot be written.
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        writeBytes(out, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a string written by `writeString`.
+     *
+     * @param in The input to read from.
+     * @return The string read, or null.
+     * @throws IOException If the string cannot be read.
+     */
+    public static String readString(DataInput in) throws IOException {
+        byte[] bytes = readBytes(in);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a byte array, which may be null, as its length and content.
+     *
+     * @param out The output to write to.
+     * @param value The bytes to write.
+     * @throws IOException If the bytes cannot be written.
+     */
+    public static void writeBytes(DataOutput out, byte[] value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, -1);
+        } else {
+            writeVarLong(out, value.length);
+            out.write(value);
+        }
+    }
+
+    /**
+     * Reads a byte array written by `writeBytes`.
+     *
+     * @param in The input to read from.
+     * @return The bytes read, or null.
+     * @throws IOException If the bytes cannot be read.
+     */
+    public static byte[] readBytes(DataInput in) throws IOException {
+        long length = readVarLong(in);
+        if (length < 0) {
+            return null;
+        }
+        if (length > Integer.MAX_VALUE - 8
+                || in instanceof InputStream && length > ((InputStream) in).available()) {
+            // Never allocate more than the message can hold.
+            throw new IOException("Invalid length " + length);
+        }
+        byte[] value = new byte[(int) length];
+        in.readFully(value);
+        return value;
+    }
+
+    private static void writeStrings(DataOutput out, String[] values) throws IOException {
+        writeVarLong(out, values == null ? -1 : values.length);
+        if (values != null) {
+            for (String value : values) {
+                writeString(out, value);
+            }
+        }
+    }
+
+    private static String[] readStrings(DataInput in) throws IOException {
+        long length = readVarLong(in);
+        if (length < 0) {
+            return null;
+        }
+        // Grow with the data read rather than trusting the length.
+        List<String> values = new ArrayList<>();
+        for (long i = 0; i < length; i++) {
+            values.add(readString(in));
+        }
+        return values.toArray(new String[0]);
+    }
+
+    private static void writeInts(DataOutput out, int[] values) throws IOException {
+        writeVarLong(out, values == null ? -1 : values.length);
+        if (values != null) {
+            for (int value : values) {
+                writeVarLong(out, value);
+            }
+        }
+    }
+
+    private static int[] readInts(DataInput in) throws IOException {
+        long length = readVarLong(in);
+        if (length < 0) {
+            return null;
+        }
+        // Grow with the data read rather than trusting the length.
+        int[] values = new int[(int) Math.min(length, 1024)];
+        for (int i = 0; i < length; i++) {
+            if (i == values.length) {
+                values = Arrays.copyOf(values, (int) Math.min(length, 2L * values.length));
+            }
+            values[i] = (int) readVarLong(in);
+        }
+        return values;
+    }
+
+    private static void writeNullableInt(DataOutput out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeVarLong(out, value);
+        }
+    }
+
+    private static Integer readNullableInt(DataInput in) throws IOException {
+        return in.readBoolean() ? (int) readVarLong(in) : null;
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a task in Java serialization form, resolving classes with a given
+     * class loader and admitting only what `TaskFilter` allows.
+     */
+    private static Object deserializeTask(byte[] bytes, ClassLoader classLoader) throws IOException, ClassNotFoundException {
+        if (bytes.length > MAX_SERIALIZED_LENGTH) {
+            throw new IOException("Serialized task too large: " + bytes.length);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                try {
+                    return Class.forName(desc.getName(), false, classLoader);
+                } catch (ClassNotFoundException ex) {
+                    // Primitive types and arrays of them.
+                    return super.resolveClass(desc);
+                }
+            }
+        }) {
+            in.setObjectInputFilter(new TaskFilter());
+            return in.readObject();
+        }
+    }
+
+    /**
+     * The filter of a serialized task. It admits classes implementing `Task`,
+     * the declared types of the serialized fields of the tasks met so far,
+     * the types in `SERIALIZED_VALUE_TYPES` and arrays of any of them, and
+     * rejects the stream once it exceeds one of the bounds.
+     */
+    private static final class TaskFilter implements ObjectInputFilter {
+
+        private final Set<Class<?>> fieldTypes = new HashSet<>();
+
+        @Override
+        public Status checkInput(FilterInfo info) {
+            if (info.depth() > MAX_SERIALIZED_DEPTH || info.references() > MAX_SERIALIZED_REFERENCES
+                    || info.streamBytes() > MAX_SERIALIZED_LENGTH || info.arrayLength() > MAX_SERIALIZED_ARRAY_LENGTH) {
+                return Status.REJECTED;
+            }
+            Class<?> type = info.serialClass();
+            if (type == null) {
+                return Status.ALLOWED;
+            }
+            while (type.isArray()) {
+                type = type.getComponentType();
+            }
+            if (type.isPrimitive() || SERIALIZED_VALUE_TYPES.contains(type) || fieldTypes.contains(type)) {
+                return Status.ALLOWED;
+            }
+            if (Task.class.isAssignableFrom(type)) {
+                ObjectStreamClass descriptor = ObjectStreamClass.lookup(type);
+                if (descriptor != null) {
+                    for (ObjectStreamField field : descriptor.getFields()) {
+                        Class<?> fieldType = field.getType();
+                        while (fieldType.isArray()) {
+                            fieldType = fieldType.getComponentType();
+                        }
+                        if (fieldType != Object.class) {
+                            fieldTypes.add(fieldType);
+                        }
+                    }
+                }
+                return Status.ALLOWED;
+            }
+            return Status.REJECTED;
+        }
+    }
+
+    /**
+     * An unsynchronized, growing output buffer.
+     */
+    private static final class Buffer extends OutputStream {
+
+        private byte[] bytes;
+        private int count;
+
+        Buffer(int size) {
+            this.bytes = new byte[size];
+        }
+
+        @Override
+        public void write(int b) {
+            if (count == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int offset, int length) {
+            if (length > bytes.length - count) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, count + length));
+            }
+            System.arraycopy(b, offset, bytes, count, length);
+            count += length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, count);
+        }
+    }
+
+    /**
+     * An unsynchronized input over a byte array, read directly as a
+     * `DataInput`.
+     */
+    private static final class Input extends InputStream implements DataInput {
+
+        private final byte[] bytes;
+        private int position;
+
+        Input(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read() {
+            return position < bytes.length ? bytes[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int offset, int length) {
+            if (position >= bytes.length) {
+                return length == 0 ? 0 : -1;
+            }
+            int count = Math.min(length, bytes.length - position);
+            System.arraycopy(bytes, position, b, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return bytes.length - position;
+        }
+
+        private int next(int count) throws EOFException {
+            if (bytes.length - position < count) {
+                throw new EOFException();
+            }
+            int start = position;
+            position += count;
+            return start;
+        }
+
+        @Override
+        public void readFully(byte[] b) throws IOException {
+            readFully(b, 0, b.length);
+        }
+
+        @Override
+        public void readFully(byte[] b, int offset, int length) throws IOException {
+            System.arraycopy(bytes, next(length), b, offset, length);
+        }
+
+        @Override
+        public int skipBytes(int n) {
+            int count = Math.max(0, Math.min(n, bytes.length - position));
+            position += count;
+            return count;
+        }
+
+        @Override
+        public boolean readBoolean() throws IOException {
+            return bytes[next(1)] != 0;
+        }
+
+        @Override
+        public byte readByte() throws IOException {
+            return bytes[next(1)];
+        }
+
+        @Override
+        public int readUnsignedByte() throws IOException {
+            return bytes[next(1)] & 0xFF;
+        }
+
+        @Override
+        public short readShort() throws IOException {
+            int i = next(2);
+            return (short) ((bytes[i] << 8) | (bytes[i + 1] & 0xFF));
+        }
+
+        @Override
+        public int readUnsignedShort() throws IOException {
+            return readShort() & 0xFFFF;
+        }
+
+        @Override
+        public char readChar() throws IOException {
+            return (char) readShort();
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            int i = next(4);
+            return (bytes[i] << 24) | ((bytes[i + 1] & 0xFF) << 16) | ((bytes[i + 2] & 0xFF) << 8) | (bytes[i + 3] & 0xFF);
+        }
+
+        @Override
+        public long readLong() throws IOException {
+            return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        @Override
+        public float readFloat() throws IOException {
+            return Float.intBitsToFloat(readInt());
+        }
+
+        @Override
+        public double readDouble() throws IOException {
+            return Double.longBitsToDouble(readLong());
+        }
+
+        /**
+         * Reads a line as `DataInputStream.readLine` does: every byte is one
+         * character, and the line ends at a line feed, a carriage return or
+         * both.
+         */
+        @Override
+        public String readLine() {
+            if (position >= bytes.length) {
+                return null;
+            }
+            StringBuilder line = new StringBuilder();
+            while (position < bytes.length) {
+                int b = bytes[position++] & 0xFF;
+                if (b == '\n') {
+                    break;
+                }
+                if (b == '\r') {
+                    if (position < bytes.length && bytes[position] == '\n') {
+                        position++;
+                    }
+                    break;
+                }
+                line.append((char) b);
+            }
+            return line.toString();
+        }
+
+        @Override
+        public String readUTF() throws IOException {
+            return DataInputStream.readUTF(this);
+        }
+    }
+}
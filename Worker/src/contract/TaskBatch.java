@@ -0,0 +1,108 @@
+package contract;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The `TaskBatch` class represents a serializable lease of several tasks of
+ * the same kind. A worker sends an empty batch naming the task ID and the
+ * number of tasks it wants, the master fills it with up to that many
+ * `TaskObject`s, and the worker returns the whole batch with the results to
+ * collect the credits in a single exchange.
+ *
+ */
+public class TaskBatch implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private int taskID;
+    private int batchSize;
+    private List<TaskObject> taskObjects = new ArrayList<>();
+
+    /**
+     * Constructs a new `TaskBatch` instance with default values.
+     */
+    public TaskBatch() {
+    }
+
+    /**
+     * Constructs a new `TaskBatch` instance requesting tasks of one kind.
+     *
+     * @param taskID The ID of the task to lease.
+     * @param batchSize The number of tasks requested.
+     */
+    public TaskBatch(int taskID, int batchSize) {
+        this.taskID = taskID;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Gets the ID of the leased task.
+     *
+     * @return The task ID.
+     */
+    public int getTaskID() {
+        return taskID;
+    }
+
+    /**
+     * Sets the ID of the leased task.
+     *
+     * @param taskID The new task ID.
+     */
+    public void setTaskID(int taskID) {
+        this.taskID = taskID;
+    }
+
+    /**
+     * Gets the number of tasks requested.
+     *
+     * @return The requested batch size.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the number of tasks requested.
+     *
+     * @param batchSize The new requested batch size.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Gets the task objects of the batch.
+     *
+     * @return The task objects; empty until the master has filled the batch.
+     */
+    public List<TaskObject> getTaskObjects() {
+        return taskObjects;
+    }
+
+    /**
+     * Sets the task objects of the batch.
+     *
+     * @param taskObjects The new task objects.
+     */
+    public void setTaskObjects(List<TaskObject> taskObjects) {
+        this.taskObjects = taskObjects;
+    }
+
+    /**
+     * Gets the sum of the credits awarded for the tasks of the batch.
+     *
+     * @return The total credit.
+     */
+    public int getTotalCredit() {
+        int total = 0;
+        for (TaskObject taskObject : taskObjects) {
+            if (taskObject.getCredit() != null) {
+                total += taskObject.getCredit();
+            }
+        }
+        return total;
+    }
+}
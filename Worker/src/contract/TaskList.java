@@ -6,11 +6,27 @@ import java.io.Serializable;
  * The `TaskList` class represents a serializable object that stores a list of
  * available tasks and their corresponding class names.
  *
+ * <p>
+ * A worker asks for the list with a `TaskList` of its own that carries no
+ * tasks, only the version of the list it already holds and the page it
+ * wants: the offset and the most tasks to return, and optionally the class
+ * names of the tasks it can run. If the version of the master is the same,
+ * the master answers with a list marked as not modified and without tasks.
+ * Otherwise the answer holds the tasks of the page, their IDs, the version
+ * and the total number of tasks matching the request.
+ *
  */
 public class TaskList implements Serializable {
 
     private String AvailableTasks[];
     private String TaskClassName[];
+    private int[] taskIDs;
+    private long version;
+    private boolean notModified;
+    private int offset;
+    private int limit;
+    private int totalTasks;
+    private String[] classFilter;
 
     /**
      * Gets the array of available task names.
@@ -47,4 +63,144 @@ public class TaskList implements Serializable {
     public void setTaskClassName(String[] TaskClassName) {
         this.TaskClassName = TaskClassName;
     }
+
+    /**
+     * Gets the ID of a task in this list.
+     *
+     * @param index The index of the task in this list.
+     * @return The ID of the task on the master.
+     */
+    public int getTaskID(int index) {
+        return taskIDs == null ? offset + index : taskIDs[index];
+    }
+
+    /**
+     * Gets the IDs of the tasks in this list.
+     *
+     * @return The task IDs, or null if the tasks are numbered on from the
+     * offset.
+     */
+    public int[] getTaskIDs() {
+        return taskIDs;
+    }
+
+    /**
+     * Sets the IDs of the tasks in this list.
+     *
+     * @param taskIDs The task IDs, or null if the tasks are numbered on from
+     * the offset.
+     */
+    public void setTaskIDs(int[] taskIDs) {
+        this.taskIDs = taskIDs;
+    }
+
+    /**
+     * Gets the version of the list of tasks on the master.
+     *
+     * @return The version, or 0 if no list is held.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the version of the list of tasks on the master.
+     *
+     * @param version The version, or 0 if no list is held.
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Checks whether the list is unchanged since the version of the request.
+     *
+     * @return True if the list held by the worker is still current.
+     */
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    /**
+     * Sets whether the list is unchanged since the version of the request.
+     *
+     * @param notModified True if the list held by the worker is still current.
+     */
+    public void setNotModified(boolean notModified) {
+        this.notModified = notModified;
+    }
+
+    /**
+     * Gets the position of the first task of the page among the matching
+     * tasks.
+     *
+     * @return The offset of the page.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Sets the position of the first task of the page among the matching
+     * tasks.
+     *
+     * @param offset The offset of the page.
+     */
+    public void setOffset(int offset) {
+        this.offset = offset;
+    }
+
+    /**
+     * Gets the most tasks a page may hold.
+     *
+     * @return The page size, or 0 for all tasks.
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Sets the most tasks a page may hold.
+     *
+     * @param limit The page size, or 0 for all tasks.
+     */
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Gets the number of tasks matching the request on all pages.
+     *
+     * @return The total number of tasks.
+     */
+    public int getTotalTasks() {
+        return totalTasks;
+    }
+
+    /**
+     * Sets the number of tasks matching the request on all pages.
+     *
+     * @param totalTasks The total number of tasks.
+     */
+    public void setTotalTasks(int totalTasks) {
+        this.totalTasks = totalTasks;
+    }
+
+    /**
+     * Gets the class names of the tasks the worker asks for.
+     *
+     * @return The class names, or null for tasks of every class.
+     */
+    public String[] getClassFilter() {
+        return classFilter;
+    }
+
+    /**
+     * Sets the class names of the tasks the worker asks for.
+     *
+     * @param classFilter The class names, or null for tasks of every class.
+     */
+    public void setClassFilter(String[] classFilter) {
+        this.classFilter = classFilter;
+    }
 }
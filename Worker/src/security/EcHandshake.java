@@ -0,0 +1,249 @@
+package security;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.crypto.KeyAgreement;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The `EcHandshake` class provides the elliptic-curve operations of the
+ * alternative handshake mode, which establishes the session key with X25519
+ * key agreement instead of RSA encryption.
+ *
+ * <p>
+ * Master and worker each own a static X25519 identity key, and the worker
+ * sends a fresh ephemeral key share. The master answers with an ephemeral
+ * key share of its own, and both sides derive the session key from three
+ * shared secrets:
+ *
+ * <ul>
+ * <li>ephemeral-ephemeral, so that the session key stays secret even if the
+ * identity keys leak later;</li>
+ * <li>master static with worker ephemeral, which only the real master can
+ * compute;</li>
+ * <li>static-static, which only the real worker and master can compute. It
+ * does not change between handshakes and is cached.</li>
+ * </ul>
+ *
+ * The master proves its identity by returning the verification string
+ * encrypted with the session key; the worker proves its identity with every
+ * data record it can encrypt. No signature is made or checked during the
+ * handshake. The identity keys are kept in key files named
+ * `name-x25519-pri.ser` and `name-x25519-pub.ser`, which are created with the
+ * `main` method of this class.
+ *
+ */
+public class EcHandshake {
+
+    /**
+     * part of the key file names of the X25519 identity keys
+     */
+    public static final String KEY_FILE_INFIX = "-x25519";
+
+    /**
+     * number of static-static secrets kept in memory
+     */
+    public static final int MAX_CACHED_SECRETS = 1024;
+
+    private static final ThreadLocal<KeyPairGenerator> X25519_GENERATOR = ThreadLocal.withInitial(() -> newInstance(() -> KeyPairGenerator.getInstance("X25519")));
+    private static final ThreadLocal<KeyFactory> X25519_FACTORY = ThreadLocal.withInitial(() -> newInstance(() -> KeyFactory.getInstance("X25519")));
+    private static final ThreadLocal<KeyAgreement> X25519_AGREEMENT = ThreadLocal.withInitial(() -> newInstance(() -> KeyAgreement.getInstance("X25519")));
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> newInstance(() -> MessageDigest.getInstance("SHA-256")));
+
+    private static final Map<String, byte[]> STATIC_SECRETS = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > MAX_CACHED_SECRETS;
+        }
+    };
+
+    private EcHandshake() {
+    }
+
+    /**
+     * Gets the name of the file holding the X25519 private key of a user.
+     *
+     * @param name The user name.
+     * @return The key file name.
+     */
+    public static String privateKeyFile(String name) {
+        return name + KEY_FILE_INFIX + "-pri.ser";
+    }
+
+    /**
+     * Gets the name of the file holding the X25519 public key of a user.
+     *
+     * @param name The user name.
+     * @return The key file name.
+     */
+    public static String publicKeyFile(String name) {
+        return name + KEY_FILE_INFIX + "-pub.ser";
+    }
+
+    /**
+     * Generates a fresh X25519 key pair for one handshake.
+     *
+     * @return The ephemeral key pair.
+     */
+    public static KeyPair newKeyShare() {
+        return X25519_GENERATOR.get().generateKeyPair();
+    }
+
+    /**
+     * Converts the public key of a key share to a base64-encoded string.
+     *
+     * @param keyShare The ephemeral key pair.
+     * @return The base64-encoded public key.
+     */
+    public static String encodeKeyShare(KeyPair keyShare) {
+        return SecurityUtil.pubKeytoB64String(keyShare.getPublic());
+    }
+
+    /**
+     * Derives the session key on the master side.
+     *
+     * @param masterKey The static private key of the master.
+     * @param workerKey The static public key of the worker.
+     * @param masterKeyShare The ephemeral key pair of the master.
+     * @param workerKeyShare The base64-encoded key share of the worker.
+     * @param transcript The fields of the handshake bound to the key.
+     * @return The session key.
+     * @throws GeneralSecurityException If a key is invalid.
+     */
+    public static SecretKey deriveMasterKey(PrivateKey masterKey, PublicKey workerKey,
+            KeyPair masterKeyShare, String workerKeyShare, String... transcript) throws GeneralSecurityException {
+        PublicKey workerEphemeral = decodeKeyShare(workerKeyShare);
+        return deriveSessionKey(
+                agree(masterKeyShare.getPrivate(), workerEphemeral),
+                agree(masterKey, workerEphemeral),
+                staticSecret(masterKey, workerKey),
+                transcript);
+    }
+
+    /**
+     * Derives the session key on the worker side.
+     *
+     * @param workerKey The static private key of the worker.
+     * @param masterKey The static public key of the master.
+     * @param workerKeyShare The ephemeral key pair of the worker.
+     * @param masterKeyShare The base64-encoded key share of the master.
+     * @param transcript The fields of the handshake bound to the key.
+     * @return The session key.
+     * @throws GeneralSecurityException If a key is invalid.
+     */
+    public static SecretKey deriveWorkerKey(PrivateKey workerKey, PublicKey masterKey,
+            KeyPair workerKeyShare, String masterKeyShare, String... transcript) throws GeneralSecurityException {
+        return deriveSessionKey(
+                agree(workerKeyShare.getPrivate(), decodeKeyShare(masterKeyShare)),
+                agree(workerKeyShare.getPrivate(), masterKey),
+                staticSecret(workerKey, masterKey),
+                transcript);
+    }
+
+    private static SecretKey deriveSessionKey(byte[] ephemeral, byte[] masterStatic, byte[] staticStatic,
+            String... transcript) {
+        MessageDigest digest = SHA256.get();
+        digest.update(ephemeral);
+        digest.update(masterStatic);
+        digest.update(staticStatic);
+        for (String field : transcript) {
+            byte[] bytes = field == null ? new byte[0] : field.getBytes(StandardCharsets.UTF_8);
+            // Prefix every field with its length, so fields cannot be shifted.
+            digest.update(new byte[]{(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16), (byte) (bytes.length >>> 8), (byte) bytes.length});
+            digest.update(bytes);
+        }
+        return new SecretKeySpec(digest.digest(), 0, 16, "AES");
+    }
+
+    private static byte[] staticSecret(PrivateKey ownKey, PublicKey peerKey) throws GeneralSecurityException {
+        // Key the cache by a digest, so no copy of the private key is kept in it.
+        MessageDigest digest = SHA256.get();
+        byte[] ownBytes = ownKey.getEncoded();
+        digest.update(ownBytes);
+        Arrays.fill(ownBytes, (byte) 0);
+        digest.update(peerKey.getEncoded());
+        String id = Base64.getEncoder().encodeToString(digest.digest());
+        synchronized (STATIC_SECRETS) {
+            byte[] secret = STATIC_SECRETS.get(id);
+            if (secret != null) {
+                return secret;
+            }
+        }
+        byte[] secret = agree(ownKey, peerKey);
+        synchronized (STATIC_SECRETS) {
+            STATIC_SECRETS.put(id, secret);
+        }
+        return secret;
+    }
+
+    private static PublicKey decodeKeyShare(String keyShare) throws GeneralSecurityException {
+        try {
+            return X25519_FACTORY.get().generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(keyShare)));
+        } catch (IllegalArgumentException ex) {
+            throw new GeneralSecurityException("Invalid key share", ex);
+        }
+    }
+
+    private static byte[] agree(PrivateKey ownKey, PublicKey peerKey) throws GeneralSecurityException {
+        KeyAgreement agreement = X25519_AGREEMENT.get();
+        agreement.init(ownKey);
+        agreement.doPhase(peerKey, true);
+        return agreement.generateSecret();
+    }
+
+    private static <T> T newInstance(Factory<T> factory) {
+        try {
+            return factory.create();
+        } catch (GeneralSecurityException ex) {
+            System.out.println("Exception in newInstance(): " + ex.getMessage());
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private interface Factory<T> {
+
+        T create() throws GeneralSecurityException;
+    }
+
+    /**
+     * Generates an X25519 identity key pair for every name given and writes
+     * each to a private and a public key file in the current directory.
+     *
+     * @param args the names of the users, for example CENTRE
+     * @throws GeneralSecurityException If X25519 is not available.
+     * @throws IOException If a key file cannot be written.
+     */
+    public static void main(String[] args) throws GeneralSecurityException, IOException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("X25519");
+        for (String name : args) {
+            KeyPair keyPair = generator.generateKeyPair();
+            HashMap<String, PrivateKey> privateKeys = new HashMap<>();
+            privateKeys.put(name, keyPair.getPrivate());
+            HashMap<String, PublicKey> publicKeys = new HashMap<>();
+            publicKeys.put(name, keyPair.getPublic());
+            try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(privateKeyFile(name)))) {
+                out.writeObject(privateKeys);
+            }
+            try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(publicKeyFile(name)))) {
+                out.writeObject(publicKeys);
+            }
+            System.out.println("Written " + privateKeyFile(name) + " and " + publicKeyFile(name));
+        }
+    }
+}
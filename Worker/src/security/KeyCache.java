@@ -0,0 +1,128 @@
+package security;
+
+import java.io.File;
+import java.security.Key;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The `KeyCache` class keeps the key maps read from `.ser` key files in
+ * memory, so a key file is only opened and deserialized again when it has
+ * changed on disk.
+ *
+ * <p>
+ * Private key files (`*-pri.ser`) are few and needed on every handshake, so
+ * they stay cached. All other key files, mostly the public keys of the
+ * individual users, are held in a least-recently-used cache of bounded size.
+ * Every entry remembers the modification time and size of its file and is
+ * reloaded once they change, so rotated keys are picked up without a restart.
+ *
+ */
+public class KeyCache {
+
+    /**
+     * default number of public key files kept in memory
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    /**
+     * minimum time in milliseconds between two checks of the same key file
+     */
+    public static final long CHECK_INTERVAL = 1000;
+
+    private static final KeyCache SHARED = new KeyCache(DEFAULT_MAX_ENTRIES);
+
+    private final Map<String, Entry> privateKeys = new HashMap<>();
+    private final LinkedHashMap<String, Entry> publicKeys;
+
+    /**
+     * Constructs a new `KeyCache` instance.
+     *
+     * @param maxEntries The maximum number of public key files kept in
+     * memory; the least recently used one is evicted first.
+     */
+    public KeyCache(int maxEntries) {
+        this.publicKeys = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Gets the cache shared by the whole process.
+     *
+     * @return The shared key cache.
+     */
+    public static KeyCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Gets the keys stored in a key file, reading the file only if it is not
+     * cached yet or has changed since it was read.
+     *
+     * @param keyFile The path to the file containing the keys.
+     * @return A HashMap containing the keys by name. It is shared and must
+     * not be modified.
+     */
+    public HashMap<String, Key> getKeys(String keyFile) {
+        Map<String, Entry> entries = keyFile.endsWith("-pri.ser") ? privateKeys : publicKeys;
+        long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(keyFile);
+        }
+        if (entry != null) {
+            if (now - entry.checked < CHECK_INTERVAL) {
+                return entry.keys;
+            }
+            File file = new File(keyFile);
+            if (file.lastModified() == entry.lastModified && file.length() == entry.length) {
+                entry.checked = now;
+                return entry.keys;
+            }
+        }
+
+        // Not cached or changed on disk: read the file again.
+        File file = new File(keyFile);
+        long lastModified = file.lastModified();
+        long length = file.length();
+        Entry loaded = new Entry(SecurityUtil.ReadinKeys(keyFile), lastModified, length, now);
+        synchronized (this) {
+            entries.put(keyFile, loaded);
+        }
+        return loaded.keys;
+    }
+
+    /**
+     * Drops a key file from the cache, so that the next lookup reads it
+     * again.
+     *
+     * @param keyFile The path to the key file.
+     */
+    public synchronized void invalidate(String keyFile) {
+        privateKeys.remove(keyFile);
+        publicKeys.remove(keyFile);
+    }
+
+    /**
+     * A cached key map together with the state of its file when it was read.
+     */
+    private static class Entry {
+
+        private final HashMap<String, Key> keys;
+        private final long lastModified;
+        private final long length;
+        private volatile long checked;
+
+        Entry(HashMap<String, Key> keys, long lastModified, long length, long checked) {
+            this.keys = keys;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.checked = checked;
+        }
+    }
+}
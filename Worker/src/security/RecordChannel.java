@@ -0,0 +1,411 @@
+package security;
+
+import contract.MessageCodec;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import javax.crypto.SecretKey;
+
+/**
+ * The `RecordChannel` class carries the messages between the Master and a
+ * Worker as binary records over a socket. Every record starts with a fixed
+ * header holding the length and the type of its body and the ID of the
+ * request it belongs to, followed by the body bytes themselves:
+ *
+ * <pre>
+ * | length (4 bytes) | type (1 byte) | request ID (4 bytes) | body (length bytes) |
+ * </pre>
+ *
+ * <p>
+ * Encrypted messages are sent as raw ciphertext, so they are neither Base64
+ * encoded nor wrapped in another layer of Java serialization. A reply carries
+ * the request ID of its request, so a worker can have several requests
+ * outstanding on one connection and the master can answer them in any order.
+ *
+ * <p>
+ * Once the session is started, `writeMessage` encodes a message with the
+ * `MessageCodec` straight into a `RecordCipher`, which encrypts it into data records as it goes, and
+ * `readMessage` returns the decrypted message of each completed request.
+ *
+ */
+public class RecordChannel implements Closeable, SessionChannel {
+
+    /**
+     * record carrying an encoded `CSAuthenticator` during authentication
+     */
+    public static final byte HANDSHAKE = 1;
+
+    /**
+     * record carrying a message encrypted with the session key, or the last
+     * chunk of one
+     */
+    public static final byte DATA = 2;
+
+    /**
+     * record carrying a plain text error message
+     */
+    public static final byte ALERT = 3;
+
+    /**
+     * record carrying one chunk of a message that continues in a later record
+     * of the same request
+     */
+    public static final byte DATA_CHUNK = 4;
+
+    /**
+     * record carrying a `SealedArtifact`: its content key encrypted with the
+     * session key, followed by the message encrypted once with the content
+     * key
+     */
+    public static final byte ARTIFACT = 5;
+
+    /**
+     * start of the text of an alert asking the worker to repeat its request
+     * after the number of milliseconds that follows
+     */
+    public static final String RETRY_AFTER = "Retry After ";
+
+    /**
+     * length of the header in front of every record body
+     */
+    public static final int HEADER_LENGTH = 9;
+
+    /**
+     * upper bound for the body of a single record
+     */
+    public static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+
+    /**
+     * upper bound for the body of a record the master receives before the
+     * session is started, which only needs to hold a handshake
+     */
+    public static final int MAX_HANDSHAKE_LENGTH = 8 * 1024;
+
+    /**
+     * size a record body is first read into; it grows as the bytes arrive,
+     * so a record header alone cannot make the reader allocate its length
+     */
+    public static final int INITIAL_BODY_LENGTH = 16 * 1024;
+
+    private final Socket socket;
+    private final DataInputStream inputStream;
+    private final DataOutputStream outputStream;
+    private final boolean master;
+    private volatile RecordCipher cipher;
+    private volatile MessageCompression compression;
+
+    /**
+     * buffer the data records are read into; only used by the thread
+     * calling `readMessage`
+     */
+    private final byte[] receiveBuffer = new byte[RecordCipher.MAX_SEALED_LENGTH];
+
+    private final RecordCipher.RecordSink sealedSink = this::writeSealed;
+
+    /**
+     * Constructs a new `RecordChannel` over a connected socket.
+     *
+     * @param socket The connected socket.
+     * @param master True on the master side of the connection, false on the
+     * worker side.
+     * @throws IOException If the socket streams cannot be opened.
+     */
+    public RecordChannel(Socket socket, boolean master) throws IOException {
+        this.socket = socket;
+        this.master = master;
+        this.inputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.outputStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    /**
+     * Writes one record and flushes it to the socket. Records written by
+     * different threads never interleave.
+     *
+     * @param type The record type.
+     * @param requestId The ID of the request the record belongs to.
+     * @param body The record body.
+     * @throws IOException If the record cannot be written.
+     */
+    public synchronized void writeRecord(byte type, int requestId, byte[] body) throws IOException {
+        outputStream.writeInt(body.length);
+        outputStream.writeByte(type);
+        outputStream.writeInt(requestId);
+        outputStream.write(body);
+        outputStream.flush();
+    }
+
+    /**
+     * Writes one record and flushes it to the socket.
+     *
+     * @param record The record to write.
+     * @throws IOException If the record cannot be written.
+     */
+    @Override
+    public void writeRecord(Record record) throws IOException {
+        writeRecord(record.getType(), record.getRequestId(), record.getBody());
+    }
+
+    /**
+     * Encodes and encrypts a message and writes its data records. The
+     * records of one message are never interleaved with other records. If the
+     * message cannot be encoded completely, its last record is not written
+     * and the connection is closed, so the peer never receives a truncated
+     * message that passes the integrity check.
+     *
+     * @param requestId The ID of the request the message belongs to.
+     * @param message The message object.
+     * @throws IOException If no session has been started or the message
+     * cannot be written.
+     */
+    @Override
+    public synchronized void writeMessage(int requestId, Object message) throws IOException {
+        RecordCipher recordCipher = cipher;
+        if (recordCipher == null) {
+            throw new IOException("No session started");
+        }
+        MessageCompression messageCompression = compression;
+        RecordCipher.MessageStream out = recordCipher.newMessageStream(requestId, sealedSink);
+        try {
+            if (messageCompression == null) {
+                MessageCodec.encode(message, out);
+            } else {
+                messageCompression.write(message, out);
+            }
+        } catch (IOException | RuntimeException ex) {
+            out.abandon();
+            close();
+            throw ex;
+        }
+        out.close();
+    }
+
+    /**
+     * Writes a sealed artifact as the reply to a request. Only its content
+     * key is encrypted with the session key; with the `AES` suite the message
+     * of the artifact is encrypted and written instead.
+     *
+     * @param requestId The ID of the request the artifact belongs to.
+     * @param artifact The sealed artifact.
+     * @throws IOException If no session has been started or the artifact
+     * cannot be written.
+     */
+    @Override
+    public synchronized void writeArtifact(int requestId, SealedArtifact artifact) throws IOException {
+        RecordCipher recordCipher = cipher;
+        if (recordCipher == null || !recordCipher.canSealArtifact(artifact)) {
+            writeMessage(requestId, artifact.getMessage());
+            return;
+        }
+        ByteBuffer header = recordCipher.sealArtifact(requestId, artifact);
+        outputStream.write(header.array(), header.arrayOffset() + header.position(), header.remaining());
+        outputStream.write(artifact.getSealed());
+        outputStream.flush();
+    }
+
+    /**
+     * Writes an encoded record straight from the buffer it was sealed into.
+     */
+    private void writeSealed(ByteBuffer record) throws IOException {
+        outputStream.write(record.array(), record.arrayOffset() + record.position(), record.remaining());
+        outputStream.flush();
+    }
+
+    @Override
+    public void startSession(SecretKey sessionKey, String cipherSuite, String compression) {
+        this.compression = MessageCompression.create(compression);
+        cipher = new RecordCipher(sessionKey, cipherSuite, master);
+    }
+
+    /**
+     * Gets the cipher suite of the session.
+     *
+     * @return The cipher suite, or null before the session is started.
+     */
+    public String getCipherSuite() {
+        RecordCipher recordCipher = cipher;
+        return recordCipher == null ? null : recordCipher.getCipherSuite();
+    }
+
+    /**
+     * Reads the next record, blocking until it has fully arrived.
+     *
+     * @return The record.
+     * @throws IOException If the connection is closed or the record is
+     * invalid.
+     */
+    public Record readRecord() throws IOException {
+        int length = inputStream.readInt();
+        byte type = inputStream.readByte();
+        int requestId = inputStream.readInt();
+        checkLength(length, maxLength());
+        return new Record(type, requestId, readBody(length));
+    }
+
+    /**
+     * Gets the largest record body accepted from the peer; the master only
+     * accepts a handshake until the session is started.
+     */
+    private int maxLength() {
+        return master && cipher == null ? MAX_HANDSHAKE_LENGTH : MAX_RECORD_LENGTH;
+    }
+
+    /**
+     * Reads a record body, growing the buffer as the bytes arrive.
+     */
+    private byte[] readBody(int length) throws IOException {
+        byte[] body = new byte[Math.min(length, INITIAL_BODY_LENGTH)];
+        inputStream.readFully(body);
+        while (body.length < length) {
+            int filled = body.length;
+            body = Arrays.copyOf(body, (int) Math.min(length, 2L * filled));
+            inputStream.readFully(body, filled, body.length - filled);
+        }
+        return body;
+    }
+
+    /**
+     * Reads the next message, blocking until it has fully arrived. Once the
+     * session is started, the data records are decrypted and the records of
+     * a message are joined, so the returned `DATA` record carries the plain
+     * message. Other records are returned as they are.
+     *
+     * @return The record.
+     * @throws IOException If the connection is closed or a record is invalid
+     * or fails the integrity check. If the peer has too many messages in
+     * progress, an `ALERT` is written before the exception is thrown, and
+     * the connection is to be closed.
+     */
+    public Record readMessage() throws IOException {
+        while (true) {
+            int length = inputStream.readInt();
+            byte type = inputStream.readByte();
+            int requestId = inputStream.readInt();
+            checkLength(length, maxLength());
+            RecordCipher recordCipher = cipher;
+            if (recordCipher == null || (type != DATA && type != DATA_CHUNK && type != ARTIFACT)) {
+                return new Record(type, requestId, readBody(length));
+            }
+            // The ciphertext is only needed until it is opened, so data
+            // records that fit are read into the same buffer every time.
+            byte[] body;
+            if (length <= receiveBuffer.length) {
+                body = receiveBuffer;
+                inputStream.readFully(body, 0, length);
+            } else {
+                body = readBody(length);
+            }
+            byte[] message;
+            try {
+                message = recordCipher.open(type, requestId, body, length);
+            } catch (RecordCipher.LimitException ex) {
+                writeRecord(ALERT, requestId, ex.getMessage().getBytes(StandardCharsets.UTF_8));
+                throw ex;
+            }
+            if (message != null) {
+                return new Record(DATA, requestId, message);
+            }
+        }
+    }
+
+    /**
+     * Encodes a record into a single buffer, header included.
+     *
+     * @param record The record to encode.
+     * @return The encoded record, ready to be written.
+     */
+    public static ByteBuffer encode(Record record) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + record.getBody().length);
+        buffer.putInt(record.getBody().length);
+        buffer.put(record.getType());
+        buffer.putInt(record.getRequestId());
+        buffer.put(record.getBody());
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Checks the body length announced in a record header.
+     *
+     * @param length The announced body length.
+     * @throws IOException If the length is negative or too large.
+     */
+    public static void checkLength(int length) throws IOException {
+        checkLength(length, MAX_RECORD_LENGTH);
+    }
+
+    /**
+     * Checks the body length announced in a record header against a bound.
+     *
+     * @param length The announced body length.
+     * @param maxLength The largest body length accepted.
+     * @throws IOException If the length is negative or too large.
+     */
+    public static void checkLength(int length, int maxLength) throws IOException {
+        if (length < 0 || length > maxLength) {
+            throw new IOException("Invalid record length: " + length);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    /**
+     * The `Record` class holds the type, the request ID and the body of one
+     * record.
+     */
+    public static class Record {
+
+        private final byte type;
+        private final int requestId;
+        private final byte[] body;
+
+        /**
+         * Constructs a new `Record` instance.
+         *
+         * @param type The record type.
+         * @param requestId The ID of the request the record belongs to.
+         * @param body The record body.
+         */
+        public Record(byte type, int requestId, byte[] body) {
+            this.type = type;
+            this.requestId = requestId;
+            this.body = body;
+        }
+
+        /**
+         * Gets the record type.
+         *
+         * @return The record type.
+         */
+        public byte getType() {
+            return type;
+        }
+
+        /**
+         * Gets the ID of the request the record belongs to.
+         *
+         * @return The request ID.
+         */
+        public int getRequestId() {
+            return requestId;
+        }
+
+        /**
+         * Gets the record body.
+         *
+         * @return The record body.
+         */
+        public byte[] getBody() {
+            return body;
+        }
+    }
+}
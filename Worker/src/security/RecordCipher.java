@@ -0,0 +1,555 @@
+package security;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import security.RecordChannel.Record;
+
+/**
+ * The `RecordCipher` class encrypts the messages of one connection into data
+ * records and decrypts the data records received back into messages. It is
+ * created once the session key is established and supports two cipher
+ * suites:
+ *
+ * <ul>
+ * <li>`AES`: every message is encrypted as a whole with `SecurityUtil` and
+ * sent as a single record, as before.</li>
+ * <li>`AES/GCM`: a message is cut into chunks of `CHUNK_SIZE` bytes and every
+ * chunk is sealed into its own record with AES-GCM. The nonce of a record is
+ * made of the sending direction and a per-direction sequence number, and the
+ * record type and request ID are authenticated with it, so records that are
+ * modified, replayed, reordered or moved to another request are
+ * rejected.</li>
+ * </ul>
+ *
+ * <p>
+ * A message is written through the stream returned by `newMessageStream`,
+ * which encrypts and emits each chunk as soon as it is full, so a large
+ * message never exists as one piece of ciphertext. Records must be written
+ * in the order they are emitted and received records must be opened in the
+ * order they arrive; the callers hold their write lock while a message stream
+ * is open.
+ *
+ * <p>
+ * With `AES/GCM` a `SealedArtifact` is sent as a single `ARTIFACT` record:
+ * its content key is sealed like a data record, with the next nonce of the
+ * direction, and is followed by the ciphertext the artifact was encrypted to
+ * once for all workers.
+ *
+ * <p>
+ * With `AES/GCM` the cipher reuses its buffers: the message stream, its chunk
+ * and the buffer a record is sealed into belong to the connection, so
+ * steady-state traffic allocates little more than the received messages
+ * themselves.
+ *
+ */
+public class RecordCipher {
+
+    /**
+     * cipher suite encrypting every message as a whole with AES
+     */
+    public static final String AES = "AES";
+
+    /**
+     * cipher suite sealing every chunk of a message with AES-GCM
+     */
+    public static final String AES_GCM = "AES/GCM";
+
+    /**
+     * number of plain text bytes sealed into one record
+     */
+    public static final int CHUNK_SIZE = 16 * 1024;
+
+    /**
+     * upper bound for a message assembled from several records
+     */
+    public static final int MAX_MESSAGE_LENGTH = 64 * 1024 * 1024;
+
+    /**
+     * largest number of messages a peer may have partly sent at once
+     */
+    public static final int MAX_PARTIAL_MESSAGES = 16;
+
+    /**
+     * upper bound for the bytes of all partly received messages together
+     */
+    public static final int MAX_PARTIAL_BYTES = MAX_MESSAGE_LENGTH;
+
+    /**
+     * number of bytes the GCM tag adds to every sealed chunk
+     */
+    public static final int TAG_BYTES = 16;
+
+    /**
+     * length of the largest record sealed by `AES/GCM`, header included
+     */
+    public static final int MAX_SEALED_LENGTH = RecordChannel.HEADER_LENGTH + CHUNK_SIZE + TAG_BYTES;
+
+    private static final int NONCE_LENGTH = 12;
+
+    private static final ThreadLocal<Cipher> GCM_CIPHER = ThreadLocal.withInitial(() -> SecurityUtil.createCipher("AES/GCM/NoPadding"));
+
+    private final SecretKey sessionKey;
+    private final String cipherSuite;
+    private final int sendDirection;
+    private final int receiveDirection;
+    private long sendSequence = 0;
+    private long receiveSequence = 0;
+    private final Map<Integer, ByteArrayOutputStream> partialMessages = new HashMap<>();
+    private long partialBytes = 0;
+
+    // Reused under the write lock of the caller.
+    private final byte[] sendNonce = new byte[NONCE_LENGTH];
+    private final byte[] sendHeader = new byte[5];
+    private ChunkStream chunkStream;
+    private ByteBuffer artifactHeader;
+
+    // Reused by the synchronized open.
+    private final byte[] receiveNonce = new byte[NONCE_LENGTH];
+    private final byte[] receiveHeader = new byte[5];
+    private byte[] receiveChunk;
+
+    /**
+     * Constructs a new `RecordCipher` instance.
+     *
+     * @param sessionKey The session key shared by both sides.
+     * @param cipherSuite The cipher suite of the session.
+     * @param master True on the master side of the connection, false on the
+     * worker side.
+     */
+    public RecordCipher(SecretKey sessionKey, String cipherSuite, boolean master) {
+        if (!isSupported(cipherSuite)) {
+            throw new IllegalArgumentException("Unsupported cipher suite: " + cipherSuite);
+        }
+        this.sessionKey = sessionKey;
+        this.cipherSuite = cipherSuite;
+        this.sendDirection = master ? 0 : 1;
+        this.receiveDirection = master ? 1 : 0;
+    }
+
+    /**
+     * Checks whether a cipher suite is supported.
+     *
+     * @param cipherSuite The name of the cipher suite, may be null.
+     * @return True if the suite can be used for a session.
+     */
+    public static boolean isSupported(String cipherSuite) {
+        return AES.equals(cipherSuite) || AES_GCM.equals(cipherSuite);
+    }
+
+    /**
+     * Binds the cipher suite a worker asked for to the verification string
+     * the master returns under the session key. The suite travels in the
+     * clear, so a suite removed or replaced on the way to the master makes
+     * the returned string differ from the one the worker expects.
+     *
+     * @param verificationString The verification string of the worker.
+     * @param requestedSuite The cipher suite the worker asked for, or null.
+     * @return The string the master returns.
+     */
+    public static String bindCipherSuite(String verificationString, String requestedSuite) {
+        return requestedSuite == null ? verificationString : verificationString + " " + requestedSuite;
+    }
+
+    /**
+     * Gets the cipher suite of the session.
+     *
+     * @return The cipher suite.
+     */
+    public String getCipherSuite() {
+        return cipherSuite;
+    }
+
+    /**
+     * Opens a stream that encrypts the bytes written to it into the data
+     * records of one message. The last record is emitted when the stream is
+     * closed; a message that could not be written completely is abandoned
+     * instead. With `AES/GCM` the same stream is handed out for every
+     * message, so a stream must be closed or abandoned before the next one is
+     * opened.
+     *
+     * @param requestId The ID of the request the message belongs to.
+     * @param sink The destination of the encrypted records.
+     * @return The stream to write the plain message to.
+     */
+    public MessageStream newMessageStream(int requestId, RecordSink sink) {
+        if (AES_GCM.equals(cipherSuite)) {
+            if (chunkStream == null) {
+                chunkStream = new ChunkStream();
+            }
+            chunkStream.reset(requestId, sink);
+            return chunkStream;
+        }
+        return new WholeMessageStream(requestId, sink);
+    }
+
+    /**
+     * Checks whether an artifact can be sent as an `ARTIFACT` record in this
+     * session.
+     *
+     * @param artifact The sealed artifact.
+     * @return True with `AES/GCM` if the artifact fits into one record.
+     */
+    public boolean canSealArtifact(SealedArtifact artifact) {
+        return AES_GCM.equals(cipherSuite)
+                && artifact.length() <= RecordChannel.MAX_RECORD_LENGTH - 64;
+    }
+
+    /**
+     * Seals the content key of an artifact into the start of an `ARTIFACT`
+     * record: the record header, the length of the key and the key encrypted
+     * with the session key. The ciphertext of the artifact has to be written
+     * right after it.
+     *
+     * @param requestId The ID of the request the artifact belongs to.
+     * @param artifact The sealed artifact.
+     * @return The start of the record. The buffer is reused for the next
+     * artifact, so it must be written or copied before then.
+     * @throws IOException If the key cannot be sealed.
+     */
+    public synchronized ByteBuffer sealArtifact(int requestId, SealedArtifact artifact) throws IOException {
+        byte[] contentKey = artifact.getContentKey().getEncoded();
+        int sealedKeyLength = contentKey.length + TAG_BYTES;
+        if (artifactHeader == null || artifactHeader.capacity() < RecordChannel.HEADER_LENGTH + 1 + sealedKeyLength) {
+            artifactHeader = ByteBuffer.allocate(RecordChannel.HEADER_LENGTH + 1 + sealedKeyLength);
+        }
+        Cipher cipher = initCipher(Cipher.ENCRYPT_MODE, sendNonce, sendHeader, sendDirection, sendSequence++, RecordChannel.ARTIFACT, requestId);
+        ByteBuffer header = artifactHeader;
+        header.clear();
+        header.putInt(1 + sealedKeyLength + artifact.length());
+        header.put(RecordChannel.ARTIFACT);
+        header.putInt(requestId);
+        header.put((byte) contentKey.length);
+        try {
+            cipher.doFinal(ByteBuffer.wrap(contentKey), header);
+        } catch (GeneralSecurityException ex) {
+            throw new IOException("Cannot seal artifact key", ex);
+        }
+        return header.flip();
+    }
+
+    /**
+     * Decrypts a received data record.
+     *
+     * @param record The received `DATA` or `DATA_CHUNK` record.
+     * @return The plain message once its last record has been opened, or
+     * null if more records of the message are to come.
+     * @throws IOException If the record cannot be decrypted or fails the
+     * integrity check.
+     */
+    public byte[] open(Record record) throws IOException {
+        return open(record.getType(), record.getRequestId(), record.getBody(), record.getBody().length);
+    }
+
+    /**
+     * Decrypts a received data record whose body is held in a buffer. The
+     * buffer is not kept, so the caller may reuse it afterwards.
+     *
+     * @param type The record type, `DATA`, `DATA_CHUNK` or `ARTIFACT`.
+     * @param requestId The ID of the request the record belongs to.
+     * @param body The buffer holding the record body.
+     * @param length The length of the record body.
+     * @return The plain message once its last record has been opened, or
+     * null if more records of the message are to come.
+     * @throws IOException If the record cannot be decrypted or fails the
+     * integrity check.
+     * @throws LimitException If the record would take the messages partly
+     * received beyond `MAX_PARTIAL_MESSAGES` or `MAX_PARTIAL_BYTES`.
+     */
+    public synchronized byte[] open(byte type, int requestId, byte[] body, int length) throws IOException {
+        if (AES.equals(cipherSuite)) {
+            if (type != RecordChannel.DATA) {
+                throw new IOException("Unexpected record type: " + type);
+            }
+            byte[] message = SecurityUtil.SymDecryptBytes(length == body.length ? body : Arrays.copyOf(body, length), sessionKey);
+            if (message == null) {
+                throw new IOException("Cannot decrypt record");
+            }
+            return message;
+        }
+
+        if (type == RecordChannel.ARTIFACT) {
+            return openArtifact(requestId, body, length);
+        }
+        if (type != RecordChannel.DATA && type != RecordChannel.DATA_CHUNK) {
+            throw new IOException("Unexpected record type: " + type);
+        }
+        int plainLength = length - TAG_BYTES;
+        if (plainLength < 0) {
+            throw new IOException("Record too short");
+        }
+        ByteArrayOutputStream partial = partialMessages.get(requestId);
+        if (partial != null && partial.size() + plainLength > MAX_MESSAGE_LENGTH) {
+            throw new IOException("Message too large");
+        }
+        if (partial == null && type == RecordChannel.DATA_CHUNK && partialMessages.size() >= MAX_PARTIAL_MESSAGES) {
+            throw new LimitException("Too many messages in progress");
+        }
+        if (partialBytes + plainLength > MAX_PARTIAL_BYTES && (partial != null || type == RecordChannel.DATA_CHUNK)) {
+            throw new LimitException("Too many bytes of messages in progress");
+        }
+        Cipher cipher = initCipher(Cipher.DECRYPT_MODE, receiveNonce, receiveHeader, receiveDirection, receiveSequence++, type, requestId);
+        try {
+            if (type == RecordChannel.DATA && partial == null) {
+                // A message of a single record is decrypted straight into its own array.
+                byte[] message = new byte[plainLength];
+                cipher.doFinal(body, 0, length, message, 0);
+                return message;
+            }
+            byte[] chunk = receiveChunk;
+            if (chunk == null || chunk.length < plainLength) {
+                chunk = new byte[Math.max(plainLength, CHUNK_SIZE)];
+                receiveChunk = chunk;
+            }
+            cipher.doFinal(body, 0, length, chunk, 0);
+            if (partial == null) {
+                partial = new ByteArrayOutputStream(2 * CHUNK_SIZE);
+                partialMessages.put(requestId, partial);
+            }
+            partial.write(chunk, 0, plainLength);
+            partialBytes += plainLength;
+        } catch (GeneralSecurityException ex) {
+            throw new IOException("Record failed the integrity check", ex);
+        }
+        if (type == RecordChannel.DATA_CHUNK) {
+            return null;
+        }
+        partialMessages.remove(requestId);
+        partialBytes -= partial.size();
+        return partial.toByteArray();
+    }
+
+    /**
+     * Opens an `ARTIFACT` record: unseals the content key with the session
+     * key and decrypts the artifact with it.
+     */
+    private byte[] openArtifact(int requestId, byte[] body, int length) throws IOException {
+        if (length < 1) {
+            throw new IOException("Record too short");
+        }
+        int sealedKeyLength = (body[0] & 0xFF) + TAG_BYTES;
+        if (1 + sealedKeyLength > length) {
+            throw new IOException("Record too short");
+        }
+        Cipher cipher = initCipher(Cipher.DECRYPT_MODE, receiveNonce, receiveHeader, receiveDirection, receiveSequence++, RecordChannel.ARTIFACT, requestId);
+        byte[] contentKey;
+        try {
+            contentKey = cipher.doFinal(body, 1, sealedKeyLength);
+        } catch (GeneralSecurityException ex) {
+            throw new IOException("Record failed the integrity check", ex);
+        }
+        return SealedArtifact.open(contentKey, body, 1 + sealedKeyLength, length - 1 - sealedKeyLength);
+    }
+
+    /**
+     * Seals a chunk into a record: writes the header and the ciphertext of
+     * the chunk into the output buffer.
+     */
+    private synchronized void seal(byte type, int requestId, ByteBuffer chunk, ByteBuffer sealed) throws IOException {
+        Cipher cipher = initCipher(Cipher.ENCRYPT_MODE, sendNonce, sendHeader, sendDirection, sendSequence++, type, requestId);
+        sealed.clear();
+        sealed.putInt(chunk.remaining() + TAG_BYTES);
+        sealed.put(type);
+        sealed.putInt(requestId);
+        try {
+            cipher.doFinal(chunk, sealed);
+        } catch (GeneralSecurityException ex) {
+            throw new IOException("Cannot seal record", ex);
+        }
+        sealed.flip();
+    }
+
+    /**
+     * Initializes the GCM cipher of this thread for one record. The nonce is
+     * made of the direction and the sequence number, and the record type and
+     * request ID are the additional authenticated data.
+     */
+    private Cipher initCipher(int mode, byte[] nonce, byte[] header, int direction, long sequence, byte type, int requestId) throws IOException {
+        putInt(nonce, 0, direction);
+        putInt(nonce, 4, (int) (sequence >>> 32));
+        putInt(nonce, 8, (int) sequence);
+        header[0] = type;
+        putInt(header, 1, requestId);
+        Cipher cipher = GCM_CIPHER.get();
+        try {
+            cipher.init(mode, sessionKey, new GCMParameterSpec(TAG_BYTES * 8, nonce));
+        } catch (GeneralSecurityException ex) {
+            throw new IOException("Cannot initialize cipher", ex);
+        }
+        cipher.updateAAD(header);
+        return cipher;
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    /**
+     * The destination of the records emitted by a message stream.
+     */
+    public interface RecordSink {
+
+        /**
+         * Writes one encrypted record.
+         *
+         * @param record The encoded record, header included. The buffer is
+         * reused for the next record, so it must be written or copied before
+         * returning.
+         * @throws IOException If the record cannot be written.
+         */
+        void write(ByteBuffer record) throws IOException;
+    }
+
+    /**
+     * The `LimitException` class signals that a peer has exceeded a bound on
+     * the messages it may have in progress. The connection is closed with an
+     * `ALERT` carrying the message of the exception.
+     */
+    public static class LimitException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructs a new `LimitException` instance.
+         *
+         * @param message The text of the alert.
+         */
+        public LimitException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Buffers the whole message and encrypts it into one record on close.
+     */
+    private class WholeMessageStream extends MessageStream {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final int requestId;
+        private final RecordSink sink;
+        private boolean closed = false;
+
+        WholeMessageStream(int requestId, RecordSink sink) {
+            this.requestId = requestId;
+            this.sink = sink;
+        }
+
+        @Override
+        public void write(int b) {
+            buffer.write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            buffer.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            sink.write(RecordChannel.encode(new Record(RecordChannel.DATA, requestId, SecurityUtil.SymEncryptBytes(buffer.toByteArray(), sessionKey))));
+        }
+
+        @Override
+        public void abandon() {
+            closed = true;
+        }
+    }
+
+    /**
+     * The `MessageStream` class is the stream a message is written to. Its
+     * last record is emitted when it is closed, which marks the message as
+     * complete to the peer.
+     */
+    public abstract static class MessageStream extends OutputStream {
+
+        /**
+         * Drops the rest of a message that could not be written completely,
+         * without emitting its last record. Records emitted before may have
+         * reached the peer, so the connection has to be failed.
+         */
+        public abstract void abandon();
+    }
+
+    /**
+     * Seals the message chunk by chunk. A full chunk is only emitted once
+     * more bytes follow, so the last record is always a `DATA` record. The
+     * stream is reset and reused for every message of the connection.
+     */
+    private class ChunkStream extends MessageStream {
+
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+        private final ByteBuffer chunkBuffer = ByteBuffer.wrap(chunk);
+        private final ByteBuffer sealed = ByteBuffer.allocate(MAX_SEALED_LENGTH);
+        private int requestId;
+        private RecordSink sink;
+        private int filled = 0;
+        private boolean closed = true;
+
+        void reset(int requestId, RecordSink sink) {
+            this.requestId = requestId;
+            this.sink = sink;
+            this.filled = 0;
+            this.closed = false;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (filled == CHUNK_SIZE) {
+                emit(RecordChannel.DATA_CHUNK);
+            }
+            chunk[filled++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (filled == CHUNK_SIZE) {
+                    emit(RecordChannel.DATA_CHUNK);
+                }
+                int count = Math.min(length, CHUNK_SIZE - filled);
+                System.arraycopy(bytes, offset, chunk, filled, count);
+                filled += count;
+                offset += count;
+                length -= count;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            emit(RecordChannel.DATA);
+            sink = null;
+        }
+
+        @Override
+        public void abandon() {
+            closed = true;
+            sink = null;
+        }
+
+        private void emit(byte type) throws IOException {
+            chunkBuffer.clear().limit(filled);
+            seal(type, requestId, chunkBuffer, sealed);
+            sink.write(sealed);
+            filled = 0;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package security;
+
+import java.io.IOException;
+import javax.crypto.SecretKey;
+import security.RecordChannel.Record;
+
+/**
+ * The `SessionChannel` interface is the sending side of a connection as seen
+ * by the protocol logic. Handshake and alert records are written as they are;
+ * once the session has been started, messages are serialized, optionally
+ * compressed and encrypted by the channel itself with the cipher suite of the
+ * session.
+ *
+ */
+public interface SessionChannel {
+
+    /**
+     * Writes one record unencrypted.
+     *
+     * @param record The record to write.
+     * @throws IOException If the record cannot be written.
+     */
+    void writeRecord(Record record) throws IOException;
+
+    /**
+     * Serializes and encrypts a message and writes it as the data records of
+     * a request.
+     *
+     * @param requestId The ID of the request the message belongs to.
+     * @param message The message object.
+     * @throws IOException If no session has been started or the message
+     * cannot be written.
+     */
+    void writeMessage(int requestId, Object message) throws IOException;
+
+    /**
+     * Writes a message that was encrypted once for all workers, encrypting
+     * only its content key with the session key.
+     *
+     * @param requestId The ID of the request the artifact belongs to.
+     * @param artifact The sealed artifact.
+     * @throws IOException If no session has been started or the artifact
+     * cannot be written.
+     */
+    void writeArtifact(int requestId, SealedArtifact artifact) throws IOException;
+
+    /**
+     * Starts encrypting and decrypting the data records with a session key.
+     *
+     * @param sessionKey The session key.
+     * @param cipherSuite The cipher suite of the session.
+     */
+    default void startSession(SecretKey sessionKey, String cipherSuite) {
+        startSession(sessionKey, cipherSuite, null);
+    }
+
+    /**
+     * Starts encrypting and decrypting the data records with a session key,
+     * compressing the messages before they are encrypted.
+     *
+     * @param sessionKey The session key.
+     * @param cipherSuite The cipher suite of the session.
+     * @param compression The compression of the session, or null for none.
+     */
+    void startSession(SecretKey sessionKey, String cipherSuite, String compression);
+}
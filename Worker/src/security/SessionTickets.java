@@ -0,0 +1,170 @@
+package security;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The `SessionTickets` class issues and checks the session tickets that let
+ * an authenticated worker reconnect without repeating the RSA handshake.
+ *
+ * <p>
+ * A ticket holds the user name, a resumption secret shared with the worker
+ * and an expiry time, sealed with AES-GCM under a ticket key that never
+ * leaves the master. The master therefore keeps no state per ticket: any
+ * ticket it can open was issued by itself and has not been modified. The
+ * ticket key is generated at start-up, so a restart of the master
+ * invalidates all tickets and the workers fall back to the full handshake.
+ *
+ */
+public class SessionTickets {
+
+    /**
+     * default time in milliseconds a ticket can be used after it was issued
+     */
+    public static final long DEFAULT_LIFETIME = 12 * 60 * 60 * 1000L;
+
+    private static final int TAG_LENGTH = 128;
+    private static final int NONCE_LENGTH = 12;
+
+    private static final ThreadLocal<Cipher> GCM_CIPHER = ThreadLocal.withInitial(() -> SecurityUtil.createCipher("AES/GCM/NoPadding"));
+
+    private final SecretKey ticketKey = SecurityUtil.SecretKeyGen();
+    private final SecureRandom random = new SecureRandom();
+    private final long lifetime;
+
+    /**
+     * Constructs a new `SessionTickets` instance with a fresh ticket key.
+     *
+     * @param lifetime The time in milliseconds a ticket can be used after it
+     * was issued.
+     */
+    public SessionTickets(long lifetime) {
+        this.lifetime = lifetime;
+    }
+
+    /**
+     * Issues a ticket for an authenticated user.
+     *
+     * @param userName The name of the authenticated user.
+     * @param secret The resumption secret shared with the user.
+     * @return The ticket as a base64-encoded string.
+     */
+    public String issue(String userName, SecretKey secret) {
+        return issue(userName, secret, System.currentTimeMillis() + lifetime);
+    }
+
+    /**
+     * Issues a ticket that expires at a given time, such as the ticket of a
+     * resumed session, which expires with the ticket it was resumed with.
+     *
+     * @param userName The name of the authenticated user.
+     * @param secret The resumption secret shared with the user.
+     * @param expiry The time the ticket expires in milliseconds since the
+     * epoch.
+     * @return The ticket as a base64-encoded string.
+     */
+    public String issue(String userName, SecretKey secret, long expiry) {
+        byte[] name = userName.getBytes(StandardCharsets.UTF_8);
+        byte[] key = secret.getEncoded();
+        ByteBuffer plain = ByteBuffer.allocate(8 + 2 + key.length + name.length);
+        plain.putLong(expiry);
+        plain.putShort((short) key.length);
+        plain.put(key);
+        plain.put(name);
+
+        byte[] nonce = new byte[NONCE_LENGTH];
+        random.nextBytes(nonce);
+        try {
+            Cipher cipher = GCM_CIPHER.get();
+            cipher.init(Cipher.ENCRYPT_MODE, ticketKey, new GCMParameterSpec(TAG_LENGTH, nonce));
+            byte[] sealed = cipher.doFinal(plain.array());
+            ByteBuffer ticket = ByteBuffer.allocate(NONCE_LENGTH + sealed.length);
+            ticket.put(nonce);
+            ticket.put(sealed);
+            return Base64.getEncoder().encodeToString(ticket.array());
+        } catch (GeneralSecurityException ex) {
+            System.out.println("Exception in issue(): " + ex.getMessage());
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Opens a ticket presented by a worker.
+     *
+     * @param ticket The ticket as a base64-encoded string.
+     * @return The content of the ticket, or null if the ticket is malformed,
+     * was not issued with the current ticket key or has expired.
+     */
+    public Ticket open(String ticket) {
+        try {
+            byte[] bytes = Base64.getDecoder().decode(ticket);
+            if (bytes.length <= NONCE_LENGTH) {
+                return null;
+            }
+            Cipher cipher = GCM_CIPHER.get();
+            cipher.init(Cipher.DECRYPT_MODE, ticketKey, new GCMParameterSpec(TAG_LENGTH, bytes, 0, NONCE_LENGTH));
+            ByteBuffer plain = ByteBuffer.wrap(cipher.doFinal(bytes, NONCE_LENGTH, bytes.length - NONCE_LENGTH));
+            long expiry = plain.getLong();
+            if (System.currentTimeMillis() > expiry) {
+                return null;
+            }
+            byte[] key = new byte[plain.getShort()];
+            plain.get(key);
+            byte[] name = new byte[plain.remaining()];
+            plain.get(name);
+            return new Ticket(new String(name, StandardCharsets.UTF_8), new SecretKeySpec(key, "AES"), expiry);
+        } catch (IllegalArgumentException | GeneralSecurityException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * The content of an opened ticket.
+     */
+    public static class Ticket {
+
+        private final String userName;
+        private final SecretKey secret;
+        private final long expiry;
+
+        Ticket(String userName, SecretKey secret, long expiry) {
+            this.userName = userName;
+            this.secret = secret;
+            this.expiry = expiry;
+        }
+
+        /**
+         * Gets the name of the user the ticket was issued to.
+         *
+         * @return The user name.
+         */
+        public String getUserName() {
+            return userName;
+        }
+
+        /**
+         * Gets the resumption secret shared with the user.
+         *
+         * @return The resumption secret.
+         */
+        public SecretKey getSecret() {
+            return secret;
+        }
+
+        /**
+         * Gets the time the ticket expires.
+         *
+         * @return The expiry time in milliseconds since the epoch.
+         */
+        public long getExpiry() {
+            return expiry;
+        }
+    }
+}
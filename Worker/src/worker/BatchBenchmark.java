@@ -0,0 +1,175 @@
+package worker;
+
+import contract.CFile;
+import contract.CSAuthenticator;
+import contract.MessageCodec;
+import contract.TaskBatch;
+import contract.TaskList;
+import contract.TaskObject;
+import java.io.IOException;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Map;
+import javax.crypto.SecretKey;
+import security.EcHandshake;
+import security.RecordChannel;
+import security.RecordChannel.Record;
+import security.RecordCipher;
+import security.SecurityUtil;
+
+/**
+ * The `BatchBenchmark` class measures how many tasks per second one worker
+ * gets through with a running master when it leases and returns the tasks
+ * one at a time and in batches of 16 and 256. Every round leases the tasks,
+ * executes them and returns the results for the credit over one
+ * authenticated session, as the worker does, so for small tasks the figure is
+ * dominated by the round trips and the encryption of the messages.
+ *
+ * <p>
+ * It is run from the worker directory, where the X25519 key files of the user
+ * are found; the default task 2 is the GCD of 128 and 76. The master prints a
+ * line for every single task, so its output is best sent to a file:
+ *
+ * <pre>
+ * java -cp dist/Worker.jar worker.BatchBenchmark localhost 5001 "Stephen Smith" 2 20000
+ * </pre>
+ *
+ */
+public class BatchBenchmark {
+
+    private static final int[] BATCH_SIZES = {1, 16, 256};
+
+    private final RecordChannel channel;
+    private int nextRequestId;
+    private TaskClassLoader taskClass;
+
+    private BatchBenchmark(RecordChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Performs the elliptic-curve handshake and starts the session.
+     */
+    private void authenticate(String userName) throws IOException {
+        Map<String, Key> userEcKeys = SecurityUtil.ReadinCachedKeys(EcHandshake.privateKeyFile(userName));
+        Map<String, Key> masterEcKeys = SecurityUtil.ReadinCachedKeys(EcHandshake.publicKeyFile("CENTRE"));
+        String verificationString = SecurityUtil.RandomAlphaNumericString(128);
+        KeyPair keyShare = EcHandshake.newKeyShare();
+        CSAuthenticator authenticator = new CSAuthenticator();
+        authenticator.setPlainUserName(userName);
+        authenticator.setVerficationString(verificationString);
+        authenticator.setKeyShare(EcHandshake.encodeKeyShare(keyShare));
+        authenticator.setCipherSuite(RecordCipher.AES_GCM);
+        channel.writeRecord(RecordChannel.HANDSHAKE, ++nextRequestId, MessageCodec.encode(authenticator));
+        Record reply = channel.readRecord();
+        if (reply.getType() != RecordChannel.HANDSHAKE) {
+            throw new IOException("The handshake was rejected");
+        }
+        CSAuthenticator masterAuthenticator = (CSAuthenticator) MessageCodec.decode(reply.getBody());
+        try {
+            SecretKey sessionKey = EcHandshake.deriveWorkerKey((PrivateKey) userEcKeys.get(userName), (PublicKey) masterEcKeys.get("CENTRE"),
+                    keyShare, masterAuthenticator.getKeyShare(),
+                    userName, verificationString, authenticator.getKeyShare(), masterAuthenticator.getKeyShare(), masterAuthenticator.getCipherSuite(),
+                    masterAuthenticator.getCompression(), authenticator.getCipherSuite());
+            if (!verificationString.equals(SecurityUtil.SymDecryptObj(masterAuthenticator.getVerficationString(), sessionKey))) {
+                throw new IOException("The master could not be authenticated");
+            }
+            channel.startSession(sessionKey, masterAuthenticator.getCipherSuite(), masterAuthenticator.getCompression());
+        } catch (GeneralSecurityException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Sends a message and reads the reply to it.
+     */
+    private Object call(Object message) throws IOException {
+        int requestId = ++nextRequestId;
+        channel.writeMessage(requestId, message);
+        Record reply = channel.readMessage();
+        if (reply.getRequestId() != requestId) {
+            throw new IOException("Unexpected reply " + reply.getRequestId() + " to request " + requestId);
+        }
+        return taskClass == null ? MessageCodec.decode(reply.getBody()) : MessageCodec.decode(reply.getBody(), taskClass);
+    }
+
+    /**
+     * Receives the class file of a task and defines its class.
+     */
+    private void loadTaskClass(int taskID) throws IOException {
+        TaskList taskList = (TaskList) call(new TaskList());
+        for (int i = 0; i < taskList.getAvailableTasks().length; i++) {
+            if (taskList.getTaskID(i) == taskID) {
+                CFile cFile = (CFile) call(taskList.getTaskClassName()[i]);
+                taskClass = new TaskClassLoader(cFile, BatchBenchmark.class.getClassLoader());
+                return;
+            }
+        }
+        throw new IOException("Unknown task " + taskID);
+    }
+
+    /**
+     * Leases, executes and returns at least a number of tasks in rounds of a
+     * batch size; a batch size of 1 leases single task objects.
+     *
+     * @return The number of tasks performed.
+     */
+    private int run(int taskID, int batchSize, int tasks) throws IOException {
+        int performed = 0;
+        while (performed < tasks) {
+            if (batchSize == 1) {
+                TaskObject taskObj = new TaskObject();
+                taskObj.setTaskID(taskID);
+                taskObj = (TaskObject) call(taskObj);
+                taskObj.getTObject().executeTask();
+                call(taskObj);
+                performed++;
+            } else {
+                TaskBatch batch = (TaskBatch) call(new TaskBatch(taskID, batchSize));
+                for (TaskObject taskObj : batch.getTaskObjects()) {
+                    taskObj.getTObject().executeTask();
+                }
+                call(batch);
+                performed += batch.getTaskObjects().size();
+            }
+        }
+        return performed;
+    }
+
+    /**
+     * @param args the command line arguments: master host, master port, user
+     * name, optional task ID and number of tasks per batch size
+     * @throws IOException If the session with the master fails.
+     */
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 5001;
+        String user = args.length > 2 ? args[2] : "Stephen Smith";
+        int taskID = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+        int tasks = args.length > 4 ? Integer.parseInt(args[4]) : 20000;
+
+        try (RecordChannel channel = new RecordChannel(new Socket(host, port), false)) {
+            BatchBenchmark benchmark = new BatchBenchmark(channel);
+            benchmark.authenticate(user);
+            benchmark.loadTaskClass(taskID);
+
+            // Warm up all paths before measuring.
+            for (int batchSize : BATCH_SIZES) {
+                benchmark.run(taskID, batchSize, tasks / 5);
+            }
+
+            System.out.printf("task %d, %d tasks per batch size%n", taskID, tasks);
+            for (int batchSize : BATCH_SIZES) {
+                long start = System.nanoTime();
+                int performed = benchmark.run(taskID, batchSize, tasks);
+                long elapsed = System.nanoTime() - start;
+                System.out.printf("batch size %4d: %10.0f tasks/s, %8.1f us per round trip%n",
+                        batchSize, performed * 1e9 / elapsed, elapsed / 1e3 / (2.0 * ((performed + batchSize - 1) / batchSize)));
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package worker;
+
+import contract.CSAuthenticator;
+import contract.MessageCodec;
+import java.io.IOException;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Map;
+import javax.crypto.SecretKey;
+import security.EcHandshake;
+import security.RecordChannel;
+import security.RecordChannel.Record;
+import security.RecordCipher;
+import security.SecurityUtil;
+
+/**
+ * The `HandshakeBenchmark` class measures how many worker connections per
+ * second a running master can authenticate with the full RSA handshake, with
+ * the elliptic-curve handshake and when resuming the session with a session
+ * ticket. Every handshake uses a new connection, as a reconnecting worker
+ * does.
+ *
+ * <p>
+ * It is run from the worker directory, where the RSA and X25519 key files of
+ * the user are found:
+ *
+ * <pre>
+ * java -cp dist/Worker.jar worker.HandshakeBenchmark localhost 5001 "Stephen Smith" 500
+ * </pre>
+ *
+ */
+public class HandshakeBenchmark {
+
+    private final String masterHost;
+    private final int masterPort;
+    private final String userName;
+    private final Map<String, Key> userKeys;
+    private final Map<String, Key> masterKeys;
+    private final Map<String, Key> userEcKeys;
+    private final Map<String, Key> masterEcKeys;
+
+    /**
+     * Constructs a new `HandshakeBenchmark` instance.
+     *
+     * @param masterHost The host of the master.
+     * @param masterPort The port of the master.
+     * @param userName The user to authenticate as.
+     */
+    public HandshakeBenchmark(String masterHost, int masterPort, String userName) {
+        this.masterHost = masterHost;
+        this.masterPort = masterPort;
+        this.userName = userName;
+        this.userKeys = SecurityUtil.ReadinCachedKeys(userName + "-pri.ser");
+        this.masterKeys = SecurityUtil.ReadinCachedKeys("CENTRE-pub.ser");
+        this.userEcKeys = SecurityUtil.ReadinCachedKeys(EcHandshake.privateKeyFile(userName));
+        this.masterEcKeys = SecurityUtil.ReadinCachedKeys(EcHandshake.publicKeyFile("CENTRE"));
+    }
+
+    /**
+     * Performs the full RSA handshake on a new connection.
+     *
+     * @return The session ticket issued by the master.
+     * @throws IOException If the master does not authenticate the user.
+     */
+    SessionResumption authenticate() throws IOException {
+        try (RecordChannel channel = new RecordChannel(new Socket(masterHost, masterPort), false)) {
+            String verificationString = SecurityUtil.RandomAlphaNumericString(128);
+            CSAuthenticator authenticator = new CSAuthenticator(
+                    userName,
+                    SecurityUtil.asyEncrypt(userName, (PrivateKey) userKeys.get(userName)),
+                    SecurityUtil.asyEncrypt(verificationString, (PublicKey) masterKeys.get("CENTRE")),
+                    null
+            );
+            authenticator.setCipherSuite(RecordCipher.AES_GCM);
+            CSAuthenticator masterAuthenticator = exchange(channel, authenticator);
+
+            SecretKey sessionKey = SecurityUtil.DecryptSessionKey(masterAuthenticator.getSessionKey(), (PrivateKey) userKeys.get(userName));
+            String masterName = SecurityUtil.asyDecrypt(masterAuthenticator.getCipherUserName(), (PublicKey) masterKeys.get("CENTRE"));
+            if (!"CENTRE".equals(masterName)
+                    || !RecordCipher.bindCipherSuite(verificationString, RecordCipher.AES_GCM).equals(SecurityUtil.SymDecryptObj(masterAuthenticator.getVerficationString(), sessionKey))) {
+                throw new IOException("The master could not be authenticated");
+            }
+            return new SessionResumption(userName, masterAuthenticator.getSessionTicket(), sessionKey);
+        }
+    }
+
+    /**
+     * Performs the elliptic-curve handshake on a new connection.
+     *
+     * @return The session ticket issued by the master.
+     * @throws IOException If the master does not authenticate the user.
+     */
+    SessionResumption authenticateEc() throws IOException {
+        try (RecordChannel channel = new RecordChannel(new Socket(masterHost, masterPort), false)) {
+            String verificationString = SecurityUtil.RandomAlphaNumericString(128);
+            KeyPair keyShare = EcHandshake.newKeyShare();
+            CSAuthenticator authenticator = new CSAuthenticator();
+            authenticator.setPlainUserName(userName);
+            authenticator.setVerficationString(verificationString);
+            authenticator.setKeyShare(EcHandshake.encodeKeyShare(keyShare));
+            authenticator.setCipherSuite(RecordCipher.AES_GCM);
+            CSAuthenticator masterAuthenticator = exchange(channel, authenticator);
+
+            SecretKey sessionKey = EcHandshake.deriveWorkerKey((PrivateKey) userEcKeys.get(userName), (PublicKey) masterEcKeys.get("CENTRE"),
+                    keyShare, masterAuthenticator.getKeyShare(),
+                    userName, verificationString, authenticator.getKeyShare(), masterAuthenticator.getKeyShare(), masterAuthenticator.getCipherSuite(),
+                    masterAuthenticator.getCompression(), authenticator.getCipherSuite());
+            if (!verificationString.equals(SecurityUtil.SymDecryptObj(masterAuthenticator.getVerficationString(), sessionKey))) {
+                throw new IOException("The master could not be authenticated");
+            }
+            return new SessionResumption(userName, masterAuthenticator.getSessionTicket(), sessionKey);
+        } catch (GeneralSecurityException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Resumes a session with a session ticket on a new connection.
+     *
+     * @param resumption The ticket of the previous session.
+     * @return The ticket of the resumed session.
+     * @throws IOException If the master does not accept the ticket.
+     */
+    SessionResumption resume(SessionResumption resumption) throws IOException {
+        try (RecordChannel channel = new RecordChannel(new Socket(masterHost, masterPort), false)) {
+            String verificationString = SecurityUtil.RandomAlphaNumericString(128);
+            CSAuthenticator masterAuthenticator = exchange(channel, resumption.createAuthenticator(verificationString, RecordCipher.AES_GCM));
+            SecretKey sessionKey = resumption.openReply(masterAuthenticator, verificationString, RecordCipher.AES_GCM);
+            if (sessionKey == null) {
+                throw new IOException("The master could not be authenticated");
+            }
+            return new SessionResumption(userName, masterAuthenticator.getSessionTicket(), sessionKey);
+        }
+    }
+
+    private CSAuthenticator exchange(RecordChannel channel, CSAuthenticator authenticator) throws IOException {
+        channel.writeRecord(RecordChannel.HANDSHAKE, 1, MessageCodec.encode(authenticator));
+        Record reply = channel.readRecord();
+        if (reply.getType() != RecordChannel.HANDSHAKE) {
+            throw new IOException("The handshake was rejected");
+        }
+        return (CSAuthenticator) MessageCodec.decode(reply.getBody());
+    }
+
+    /**
+     * @param args the command line arguments: master host, master port, user
+     * name and optional number of handshakes per mode
+     * @throws IOException If a handshake fails.
+     */
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 5001;
+        String user = args.length > 2 ? args[2] : "Stephen Smith";
+        int count = args.length > 3 ? Integer.parseInt(args[3]) : 500;
+        HandshakeBenchmark benchmark = new HandshakeBenchmark(host, port, user);
+
+        // Warm up all paths before measuring.
+        SessionResumption resumption = benchmark.authenticate();
+        for (int i = 0; i < Math.min(count, 100); i++) {
+            resumption = benchmark.resume(benchmark.authenticate());
+            resumption = benchmark.authenticateEc();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            resumption = benchmark.authenticate();
+        }
+        long full = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            resumption = benchmark.authenticateEc();
+        }
+        long ec = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            resumption = benchmark.resume(resumption);
+        }
+        long resumed = System.nanoTime() - start;
+
+        System.out.printf("full handshake:    %8.1f handshakes/s%n", count * 1e9 / full);
+        System.out.printf("EC handshake:      %8.1f handshakes/s%n", count * 1e9 / ec);
+        System.out.printf("resumed handshake: %8.1f handshakes/s%n", count * 1e9 / resumed);
+    }
+}
@@ -0,0 +1,90 @@
+package worker;
+
+import contract.CSAuthenticator;
+import java.nio.charset.StandardCharsets;
+import javax.crypto.SecretKey;
+import security.RecordCipher;
+import security.SecurityUtil;
+
+/**
+ * The `SessionResumption` class keeps the session ticket the master issued
+ * after an authentication together with its resumption secret, and builds
+ * and checks the messages of the resumption handshake on a later connection.
+ *
+ * <p>
+ * The resumption handshake only uses symmetric encryption: the worker
+ * encrypts a fresh verification string with the resumption secret, and the
+ * master returns it encrypted with a new session key, which it sends wrapped
+ * with the resumption secret.
+ *
+ */
+class SessionResumption {
+
+    private final String userName;
+    private final String ticket;
+    private final SecretKey secret;
+
+    /**
+     * Constructs a new `SessionResumption` instance.
+     *
+     * @param userName The name of the authenticated user.
+     * @param ticket The session ticket issued by the master.
+     * @param secret The resumption secret of the ticket, which is the session
+     * key of the session the ticket was issued in.
+     */
+    SessionResumption(String userName, String ticket, SecretKey secret) {
+        this.userName = userName;
+        this.ticket = ticket;
+        this.secret = secret;
+    }
+
+    /**
+     * Gets the name of the user the ticket was issued to.
+     *
+     * @return The user name.
+     */
+    String getUserName() {
+        return userName;
+    }
+
+    /**
+     * Creates the authenticator presenting the ticket to the master.
+     *
+     * @param verificationString A fresh random verification string.
+     * @param cipherSuite The cipher suite asked for.
+     * @return The authenticator to send.
+     */
+    CSAuthenticator createAuthenticator(String verificationString, String cipherSuite) {
+        CSAuthenticator authenticator = new CSAuthenticator();
+        authenticator.setPlainUserName(userName);
+        authenticator.setVerficationString(SecurityUtil.SymEncrypt(verificationString.getBytes(StandardCharsets.UTF_8), secret));
+        authenticator.setCipherSuite(cipherSuite);
+        authenticator.setSessionTicket(ticket);
+        return authenticator;
+    }
+
+    /**
+     * Checks the reply of the master and extracts the new session key.
+     *
+     * @param masterAuthenticator The authenticator sent back by the master.
+     * @param verificationString The verification string that was sent.
+     * @param cipherSuite The cipher suite asked for, which the master returns
+     * bound to the verification string.
+     * @return The new session key, or null if the master did not prove that
+     * it could open the ticket.
+     */
+    SecretKey openReply(CSAuthenticator masterAuthenticator, String verificationString, String cipherSuite) {
+        if (masterAuthenticator.getSessionKey() == null || masterAuthenticator.getVerficationString() == null) {
+            return null;
+        }
+        SecretKey sessionKey = SecurityUtil.UnwrapSessionKey(masterAuthenticator.getSessionKey(), secret);
+        if (sessionKey == null) {
+            return null;
+        }
+        byte[] returned = SecurityUtil.SymDecrypt(masterAuthenticator.getVerficationString(), sessionKey);
+        if (returned == null || !RecordCipher.bindCipherSuite(verificationString, cipherSuite).equals(new String(returned, StandardCharsets.UTF_8))) {
+            return null;
+        }
+        return sessionKey;
+    }
+}
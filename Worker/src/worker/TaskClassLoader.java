@@ -0,0 +1,74 @@
+package worker;
+
+import contract.CFile;
+
+/**
+ * The `TaskClassLoader` class defines one version of a task class straight
+ * from the bytes of a received `CFile`, so the class file never has to be
+ * written to disk or be on the class path.
+ *
+ * <p>
+ * Every version of a task class gets a loader of its own, so two versions of
+ * the same class can be in use at the same time, for example while a task of
+ * the old version is still running when the master has already sent a new
+ * one. The task class itself is always taken from this loader, even if a
+ * class of the same name is on the class path; every other class, such as
+ * `contract.Task`, is delegated to the parent loader.
+ *
+ */
+class TaskClassLoader extends ClassLoader {
+
+    private final String hash;
+    private final Class<?> taskClass;
+
+    /**
+     * Constructs a new `TaskClassLoader` and defines the task class of a
+     * received class file.
+     *
+     * @param cFile The class file with its content and hash.
+     * @param parent The loader of the classes shared with the worker.
+     * @throws ClassFormatError If the content is not a valid class file.
+     */
+    TaskClassLoader(CFile cFile, ClassLoader parent) {
+        super(loaderName(cFile.getFhash()), parent);
+        this.hash = cFile.getFhash();
+        this.taskClass = defineClass(null, cFile.getFbyte(), 0, cFile.getFbyte().length);
+    }
+
+    /**
+     * Names a loader after the version of its class, as shown in stack
+     * traces.
+     */
+    private static String loaderName(String hash) {
+        return hash == null ? "task" : "task@" + hash.substring(0, Math.min(12, hash.length()));
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        // The task class is null while it is being defined and its
+        // super types are loaded.
+        if (taskClass != null && name.equals(taskClass.getName())) {
+            return taskClass;
+        }
+        return super.loadClass(name, resolve);
+    }
+
+    /**
+     * Gets the hash of the class file this loader was created from.
+     *
+     * @return The SHA-256 hash of the class file in hexadecimal, or null if
+     * the master did not send one.
+     */
+    String getHash() {
+        return hash;
+    }
+
+    /**
+     * Gets the task class defined by this loader.
+     *
+     * @return The task class.
+     */
+    Class<?> getTaskClass() {
+        return taskClass;
+    }
+}
@@ -2,23 +2,40 @@ package worker;
 
 import contract.CFile;
 import contract.CSAuthenticator;
+import contract.MessageCodec;
 import contract.Task;
+import contract.TaskBatch;
 import contract.TaskList;
 import contract.TaskObject;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.io.BufferedOutputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.InterruptedIOException;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPair;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.crypto.SecretKey;
+import security.EcHandshake;
+import security.RecordChannel;
+import security.RecordChannel.Record;
+import security.RecordCipher;
 import security.SecurityUtil;
 
 /**
@@ -29,16 +46,72 @@ import security.SecurityUtil;
  */
 public class Worker extends javax.swing.JFrame {
 
+    /**
+     * number of tasks leased per calculation; set with -Dworker.batchSize
+     */
+    private static final int BATCH_SIZE = Integer.getInteger("worker.batchSize", 1);
+
+    /**
+     * cipher suite asked for during authentication; set with
+     * -Dworker.cipherSuite
+     */
+    private static final String CIPHER_SUITE = System.getProperty("worker.cipherSuite", RecordCipher.AES_GCM);
+
+    /**
+     * compression offered during authentication, none by default; set with
+     * -Dworker.compression=deflate on slow links
+     */
+    private static final String COMPRESSION = System.getProperty("worker.compression");
+
+    /**
+     * class names of the tasks this worker lists, all by default; set with
+     * -Dworker.taskClasses=CalculatePi.class,CalculateGCD.class
+     */
+    private static final String[] TASK_CLASSES = System.getProperty("worker.taskClasses") == null ? null
+            : System.getProperty("worker.taskClasses").split(",");
+
+    /**
+     * number of tasks fetched per page of the task list, all at once by
+     * default; set with -Dworker.taskPageSize
+     */
+    private static final int TASK_PAGE_SIZE = Integer.getInteger("worker.taskPageSize", 0);
+
+    /**
+     * handshake used for a new session, RSA or EC; set with
+     * -Dworker.handshake
+     */
+    private static final boolean EC_HANDSHAKE = "EC".equalsIgnoreCase(System.getProperty("worker.handshake", "RSA"));
+
     private String masterHost;
     private int masterPort;
     private TaskList taskList = new TaskList();
 
+    /**
+     * loaders of the current version of every task class received, by class
+     * name
+     */
+    private final Map<String, TaskClassLoader> taskClasses = new ConcurrentHashMap<>();
+
     private Socket socket;
-    private ObjectInputStream inputStream;
-    private ObjectOutputStream outputStream;
+    private RecordChannel channel;
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+    private final Map<Integer, CompletableFuture<Record>> pendingRequests = new ConcurrentHashMap<>();
 
     private SecretKey sessionKey;
 
+    /**
+     * ticket of the last authentication, used to resume the session after a
+     * reconnect without the RSA handshake
+     */
+    private SessionResumption resumption;
+
+    /**
+     * lease of the next task, requested while the current one runs, and the
+     * ID of its task; guarded by the worker
+     */
+    private CompletableFuture<Record> prefetchedLease;
+    private int prefetchedTaskID;
+
     /**
      * Creates new form Worker
      */
@@ -49,12 +122,6 @@ public class Worker extends javax.swing.JFrame {
             @Override
             public void windowClosing(WindowEvent e) {
                 try {
-                    if (inputStream != null) {
-                        inputStream.close();
-                    }
-                    if (outputStream != null) {
-                        outputStream.close();
-                    }
                     if (socket != null && !socket.isClosed()) {
                         socket.close();
                     }
@@ -290,88 +357,188 @@ public class Worker extends javax.swing.JFrame {
     }//GEN-LAST:event_clearBoardBtnActionPerformed
 
     private void calculateBtnActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_calculateBtnActionPerformed
-        try {
-            // Get the selected task name from the task list combo box.
-            String taskName = taskList.getAvailableTasks()[taskListComboBox.getSelectedIndex()];
-            // Update the progress board with the task in progress message.
-            progressBoardTA.append("The Task (" + taskName + ") is in progress...\r\n");
-
-            // Get the class name associated with the selected task.
-            String className = taskList.getTaskClassName()[taskListComboBox.getSelectedIndex()];
-            // Encrypt the class name using the session key.
-            String encryptedClassName = encryptMessage(className, sessionKey);
-
-            // Send the encrypted class name to the server.
-            outputStream.writeObject(encryptedClassName);
-            outputStream.flush();
-
-            while (true) {
-                // Receive an encrypted message from the server.
-                String encryptedMessage = (String) inputStream.readObject();
-                // Decrypt the received message using the session key.
-                Object message = decryptMessage(encryptedMessage, sessionKey);
-
-                if (message instanceof CFile) {
-                    // If the received message is a CFile, it contains a file to be processed.
-                    progressBoardTA.append("The encrypted CFile String: " + encryptedMessage + "\r\n");
-
-                    // Extract the CFile object.
-                    CFile cFile = (CFile) message;
-                    // Write the file content to a local file.
-                    FileOutputStream fo = new FileOutputStream(cFile.getFname());
-                    BufferedOutputStream bos = new BufferedOutputStream(fo);
-                    bos.write(cFile.getFbyte(), 0, cFile.getFbyte().length);
-                    bos.close();
-
-                    // Create a TaskObject to send back to the server with the task ID.
-                    TaskObject taskObject = new TaskObject();
-                    taskObject.setTaskID(getSelectedTaskID());
-
-                    // Encrypt the TaskObject and send it to the server.
-                    String encryptedTaskObject = encryptMessage(taskObject, sessionKey);
-
-                    outputStream.writeObject(encryptedTaskObject);
-                    outputStream.flush();
-                } else if (message instanceof TaskObject) {
-                    // If the received message is a TaskObject, it represents a task to be executed.
-                    TaskObject taskObj = (TaskObject) message;
-                    Task task = taskObj.getTObject();
-                    if (task.getResult() == null) {
-                        // If the task result is not yet computed, execute the task.
-                        task.executeTask();
-
-                        // Encrypt the TaskObject with the task result and send it to the server.
-                        String encryptedTaskObject = encryptMessage(taskObj, sessionKey);
-
-                        outputStream.writeObject(encryptedTaskObject);
-                        outputStream.flush();
-
-                        // Update the progress board with task completion messages.
-                        progressBoardTA.append("The Task encrypted String: " + encryptedTaskObject + "\r\n");
-                        progressBoardTA.append("The Task (" + taskName + ") is done.\r\n");
-                    } else {
-                        // If the task result is already computed, receive and display the credit.
-                        progressBoardTA.append("The received credit for (" + taskName + ") is " + taskObj.getCredit() + ".\r\n");
-                        progressBoardTA.append("----------------------------------------------------\r\n");
-                        break; // Exit the loop as the task is completed.
-                    }
-                }
+        // Get the selected task name, class name and ID from the task list;
+        // the task runs off the event dispatch thread, so the window stays
+        // responsive while it computes.
+        int index = taskListComboBox.getSelectedIndex();
+        String taskName = taskList.getAvailableTasks()[index];
+        progressBoardTA.append("The Task (" + taskName + ") is in progress...\r\n");
+        calculateBtn.setEnabled(false);
+        new TaskRun(taskName, taskList.getTaskClassName()[index], getSelectedTaskID()).execute();
+    }//GEN-LAST:event_calculateBtnActionPerformed
+
+    /**
+     * Takes the lease requested ahead for a task, or requests one now.
+     *
+     * @param taskID The ID of the task.
+     * @return The future reply to the lease.
+     * @throws IOException If the lease cannot be requested.
+     */
+    private synchronized CompletableFuture<Record> takeLease(int taskID) throws IOException {
+        CompletableFuture<Record> lease = prefetchedLease;
+        prefetchedLease = null;
+        if (lease != null && prefetchedTaskID == taskID && !lease.isCompletedExceptionally()) {
+            return lease;
+        }
+        return sendMessage(leaseRequest(taskID));
+    }
+
+    /**
+     * Requests the next lease of a task ahead, so it is at hand when the task
+     * is calculated again. A lease of another task requested before is
+     * dropped; the master hands its tasks out again.
+     *
+     * @param taskID The ID of the task.
+     * @throws IOException If the lease cannot be requested.
+     */
+    private synchronized void prefetchLease(int taskID) throws IOException {
+        prefetchedLease = sendMessage(leaseRequest(taskID));
+        prefetchedTaskID = taskID;
+    }
+
+    /**
+     * Creates the request leasing one task, or a batch of `BATCH_SIZE` tasks.
+     */
+    private Object leaseRequest(int taskID) {
+        if (BATCH_SIZE > 1) {
+            // Lease several tasks of the selected kind in one exchange.
+            return new TaskBatch(taskID, BATCH_SIZE);
+        }
+        TaskObject taskObject = new TaskObject();
+        taskObject.setTaskID(taskID);
+        return taskObject;
+    }
+
+    /**
+     * The `TaskRun` class performs one calculation in the background: it
+     * obtains the task class and the leased task, requests the lease of the
+     * next task before the current one is executed, so the round trip
+     * overlaps the computation, and returns the result for the credit. The
+     * progress is appended to the board on the event dispatch thread.
+     */
+    private class TaskRun extends SwingWorker<Void, String> {
+
+        private final String taskName;
+        private final String className;
+        private final int taskID;
+
+        TaskRun(String taskName, String className, int taskID) {
+            this.taskName = taskName;
+            this.className = className;
+            this.taskID = taskID;
+        }
+
+        @Override
+        protected Void doInBackground() throws IOException {
+            // Request the class file and the task itself at once; both requests
+            // are in flight together instead of costing a round trip each. A
+            // class file received before is asked for by the hash of its
+            // content, so the master only sends it again if it has changed.
+            TaskClassLoader taskClass = taskClasses.get(className);
+            CompletableFuture<Record> cFileReply = sendMessage(taskClass == null ? className : new CFile(className, null, taskClass.getHash()));
+            CompletableFuture<Record> taskReply = takeLease(taskID);
+
+            // Receive the CFile, which contains the class file of the task.
+            CFile cFile = (CFile) readMessage(awaitReply(cFileReply));
+            if (cFile.getFbyte() == null) {
+                // The class received before is still current.
+                publish("The CFile (" + cFile.getFname() + ") is up to date.\r\n");
+            } else {
+                publish("The CFile (" + cFile.getFname() + ", " + cFile.getFbyte().length + " bytes) has been received.\r\n");
+                // Define the task class in memory; it has to be defined before
+                // the task object can be decoded. Tasks of an earlier version
+                // keep the loader of that version.
+                taskClass = new TaskClassLoader(cFile, Worker.class.getClassLoader());
+                taskClasses.put(className, taskClass);
             }
-        } catch (IOException | ClassNotFoundException ex) {
-            Logger.getLogger(Worker.class.getName()).log(Level.SEVERE, null, ex);
+
+            Object leased = readMessage(awaitReply(taskReply), taskClass);
+            // A job that is done leases no more tasks; there is nothing to
+            // return to the master and no next task to lease.
+            if (leased instanceof TaskBatch ? ((TaskBatch) leased).getTaskObjects().isEmpty() : ((TaskObject) leased).getTObject() == null) {
+                publish("The Task (" + taskName + ") has no more work.\r\n");
+                publish("----------------------------------------------------\r\n");
+                return null;
+            }
+            // Lease the next task while this one computes.
+            prefetchLease(taskID);
+            if (leased instanceof TaskBatch) {
+                runTaskBatch((TaskBatch) leased, taskClass);
+                return null;
+            }
+
+            // Receive the TaskObject, which represents the task to be executed.
+            TaskObject taskObj = (TaskObject) leased;
+            Task task = taskObj.getTObject();
+            task.executeTask();
+
+            // Send the TaskObject with the task result to the server.
+            CompletableFuture<Record> creditReply = sendMessage(taskObj);
+
+            // Update the progress board with task completion messages.
+            publish("The Task (" + taskName + ") is done.\r\n");
+
+            // Receive and display the credit.
+            taskObj = (TaskObject) readMessage(awaitReply(creditReply), taskClass);
+            publish("The received credit for (" + taskName + ") is " + taskObj.getCredit() + ".\r\n");
+            publish("----------------------------------------------------\r\n");
+            return null;
         }
-    }//GEN-LAST:event_calculateBtnActionPerformed
+
+        /**
+         * Executes every task of a leased batch and returns the results to the
+         * master in a single message.
+         *
+         * @param batch The batch filled by the master.
+         * @param taskClass The loader of the task class of the batch.
+         * @throws IOException If the batch cannot be exchanged with the master.
+         */
+        private void runTaskBatch(TaskBatch batch, TaskClassLoader taskClass) throws IOException {
+            for (TaskObject taskObj : batch.getTaskObjects()) {
+                taskObj.getTObject().executeTask();
+            }
+
+            // Send the batch with all task results to the server.
+            CompletableFuture<Record> creditReply = sendMessage(batch);
+            publish("The batch of " + batch.getTaskObjects().size() + " tasks (" + taskName + ") is done.\r\n");
+
+            // Receive and display the credit of the whole batch.
+            batch = (TaskBatch) readMessage(awaitReply(creditReply), taskClass);
+            publish("The received credit for (" + taskName + ") is " + batch.getTotalCredit() + ".\r\n");
+            publish("----------------------------------------------------\r\n");
+        }
+
+        @Override
+        protected void process(List<String> lines) {
+            for (String line : lines) {
+                progressBoardTA.append(line);
+            }
+        }
+
+        @Override
+        protected void done() {
+            try {
+                get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                Logger.getLogger(Worker.class.getName()).log(Level.SEVERE, null, ex.getCause());
+            }
+            // The connection may have been lost in the meantime.
+            calculateBtn.setEnabled(refreshBtn.isEnabled());
+        }
+    }
 
     private void refreshBtnActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_refreshBtnActionPerformed
         try {
-            // Encrypt the task list using the session key and send it to the server.
-            String encryptedTaskList = encryptMessage(taskList, sessionKey);
-            this.outputStream.writeObject(encryptedTaskList);
-
-            // Receive an encrypted task list from the server and decrypt it using the session key.
-            encryptedTaskList = (String) inputStream.readObject();
-            taskList = (TaskList) decryptMessage(encryptedTaskList, sessionKey);
-            this.progressBoardTA.append("The TaskList encrypted String: " + encryptedTaskList + "\r\n");
+            // Ask for the task list; the master only sends it if it differs from the one held.
+            TaskList received = fetchTaskList();
+            if (received == null) {
+                this.progressBoardTA.append("The TaskList is up to date.\r\n");
+                return;
+            }
+            taskList = received;
+            this.progressBoardTA.append("The TaskList has been received.\r\n");
 
             // Clear the task list combo box and enable it.
             taskListComboBox.removeAllItems();
@@ -384,12 +551,88 @@ public class Worker extends javax.swing.JFrame {
 
             // Enable the "Calculate" button to allow the user to select and execute tasks.
             calculateBtn.setEnabled(true);
-        } catch (IOException | ClassNotFoundException ex) {
+        } catch (IOException ex) {
         }
     }//GEN-LAST:event_refreshBtnActionPerformed
 
+    /**
+     * Fetches the task list from the master, page by page if a page size is
+     * set. The first request carries the version of the list held, so an
+     * unchanged list is not sent again; the further pages are asked for all
+     * at once.
+     *
+     * @return The task list, or null if the list held is still current.
+     * @throws IOException If the master cannot be reached.
+     */
+    private TaskList fetchTaskList() throws IOException {
+        while (true) {
+            TaskList first = (TaskList) readMessage(awaitReply(sendMessage(taskListRequest(taskList.getVersion(), 0))));
+            if (first.isNotModified()) {
+                return null;
+            }
+            int total = first.getTotalTasks();
+            List<TaskList> pages = new ArrayList<>();
+            pages.add(first);
+            List<CompletableFuture<Record>> replies = new ArrayList<>();
+            for (int offset = first.getAvailableTasks().length; offset < total && TASK_PAGE_SIZE > 0; offset += TASK_PAGE_SIZE) {
+                replies.add(sendMessage(taskListRequest(0, offset)));
+            }
+            boolean changed = false;
+            for (CompletableFuture<Record> reply : replies) {
+                TaskList page = (TaskList) readMessage(awaitReply(reply));
+                changed |= page.getVersion() != first.getVersion();
+                pages.add(page);
+            }
+            if (changed) {
+                // The list changed on the master while it was paged through; start over.
+                continue;
+            }
+            if (pages.size() == 1) {
+                return first;
+            }
+            // Join the pages into one list.
+            String[] availableTasks = new String[total];
+            String[] classNames = new String[total];
+            int[] taskIDs = new int[total];
+            int count = 0;
+            for (TaskList page : pages) {
+                for (int i = 0; i < page.getAvailableTasks().length && count < total; i++, count++) {
+                    availableTasks[count] = page.getAvailableTasks()[i];
+                    classNames[count] = page.getTaskClassName()[i];
+                    taskIDs[count] = page.getTaskID(i);
+                }
+            }
+            TaskList joined = new TaskList();
+            joined.setAvailableTasks(Arrays.copyOf(availableTasks, count));
+            joined.setTaskClassName(Arrays.copyOf(classNames, count));
+            joined.setTaskIDs(Arrays.copyOf(taskIDs, count));
+            joined.setVersion(first.getVersion());
+            joined.setTotalTasks(count);
+            return joined;
+        }
+    }
+
+    private TaskList taskListRequest(long version, int offset) {
+        TaskList request = new TaskList();
+        request.setVersion(version);
+        request.setOffset(offset);
+        request.setLimit(TASK_PAGE_SIZE);
+        request.setClassFilter(TASK_CLASSES);
+        return request;
+    }
+
     private void authenticateBtnActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_authenticateBtnActionPerformed
         try {
+            // Resume the session of a previous authentication if the master
+            // still accepts its ticket.
+            if (resumption != null && resumption.getUserName().equals(usernameTextField.getText()) && resumeSession()) {
+                return;
+            }
+            if (EC_HANDSHAKE) {
+                authenticateEc();
+                return;
+            }
+
             // Display progress information about mutual authentication.
             this.progressBoardTA.setText(this.progressBoardTA.getText() + "The mutual authentication is progressing.");
 
@@ -410,20 +653,23 @@ public class Worker extends javax.swing.JFrame {
                     cipherVerificationString,
                     null
             );
-            outputStream.writeObject(authenticator);
-            outputStream.flush();
+            authenticator.setCipherSuite(CIPHER_SUITE);
+            authenticator.setCompression(COMPRESSION);
+            CompletableFuture<Record> reply = sendRequest(RecordChannel.HANDSHAKE, MessageCodec.encode(authenticator));
 
             // Receive a response from the server.
-            Object input = inputStream.readObject();
-            if (input instanceof String) {
-                // If the response is a string, display it in the progress board.
-                this.progressBoardTA.setText(this.progressBoardTA.getText() + "\r\n" + input);
-            } else if (input instanceof CSAuthenticator) {
+            Record input = awaitReply(reply);
+            if (retryIfBusy(input)) {
+                // The master is busy; the authentication is repeated later.
+            } else if (input.getType() == RecordChannel.ALERT) {
+                // If the response is an alert, display its text in the progress board.
+                this.progressBoardTA.setText(this.progressBoardTA.getText() + "\r\n" + new String(input.getBody(), StandardCharsets.UTF_8));
+            } else if (input.getType() == RecordChannel.HANDSHAKE) {
                 // If the response is a CSAuthenticator object, proceed with mutual authentication.
-                CSAuthenticator masterAuthenticator = (CSAuthenticator) input;
+                CSAuthenticator masterAuthenticator = (CSAuthenticator) MessageCodec.decode(input.getBody());
 
                 // Retrieve the user's private key.
-                HashMap keys = SecurityUtil.ReadinKeys(authenticator.getPlainUserName() + "-pri.ser");
+                Map<String, Key> keys = SecurityUtil.ReadinCachedKeys(authenticator.getPlainUserName() + "-pri.ser");
 
                 // Decrypt the session key using the user's private key.
                 sessionKey = SecurityUtil.DecryptSessionKey(masterAuthenticator.getSessionKey(), (PrivateKey) keys.get(authenticator.getPlainUserName()));
@@ -432,30 +678,190 @@ public class Worker extends javax.swing.JFrame {
                 String decryptMasterName = decrypt(masterAuthenticator.getCipherUserName(), "CENTRE-pub.ser");
                 String decryptVerificationString = (String) SecurityUtil.SymDecryptObj(masterAuthenticator.getVerficationString(), sessionKey);
 
-                // Check if the decrypted master name is "CENTRE" and the verification strings match.
-                if ("CENTRE".equals(decryptMasterName) && verificationString.equals(decryptVerificationString)) {
+                // Check if the decrypted master name is "CENTRE" and the verification strings match;
+                // the master returns the cipher suite asked for along with it.
+                if ("CENTRE".equals(decryptMasterName) && RecordCipher.bindCipherSuite(verificationString, CIPHER_SUITE).equals(decryptVerificationString)) {
                     // Display the session key in both cipher and plain text.
                     this.progressBoardTA.setText(this.progressBoardTA.getText() + "\r\n The session key in cipher text: " + masterAuthenticator.getSessionKey());
                     this.progressBoardTA.setText(this.progressBoardTA.getText() + "\r\n The session key in plain text: " + SecurityUtil.keytoB64String(sessionKey));
                     this.progressBoardTA.setText(this.progressBoardTA.getText() + "\r\n The mututal authentication is done!\r\n");
 
-                    // Disable the authentication button and enable the refresh button.
-                    authenticateBtn.setEnabled(false);
-                    refreshBtn.setEnabled(true);
+                    startSession(authenticator.getPlainUserName(), masterAuthenticator);
                 } else {
                     // Display a message indicating that mutual authentication failed.
                     this.progressBoardTA.setText(this.progressBoardTA.getText() + "\r\n The mututal authentication failed!\r\n");
                 }
             }
-        } catch (IOException | ClassNotFoundException ex) {
+        } catch (IOException ex) {
         }
     }//GEN-LAST:event_authenticateBtnActionPerformed
 
+    /**
+     * Performs the elliptic-curve handshake: the worker sends a fresh X25519
+     * key share and derives the session key from the key share of the master
+     * and the X25519 identity keys of both, without any RSA operation. The
+     * master is authenticated by returning the verification string under that
+     * key.
+     *
+     * @throws IOException If the handshake cannot be exchanged with the
+     * master.
+     */
+    private void authenticateEc() throws IOException {
+        String userName = usernameTextField.getText();
+        String verificationString = SecurityUtil.RandomAlphaNumericString(128);
+        KeyPair keyShare = EcHandshake.newKeyShare();
+
+        CSAuthenticator authenticator = new CSAuthenticator();
+        authenticator.setPlainUserName(userName);
+        authenticator.setVerficationString(verificationString);
+        authenticator.setKeyShare(EcHandshake.encodeKeyShare(keyShare));
+        authenticator.setCipherSuite(CIPHER_SUITE);
+        authenticator.setCompression(COMPRESSION);
+        this.progressBoardTA.append("\r\nThe verification string in plain text: " + verificationString);
+        this.progressBoardTA.append("\r\nThe key share of the worker: " + authenticator.getKeyShare());
+
+        Record input = awaitReply(sendRequest(RecordChannel.HANDSHAKE, MessageCodec.encode(authenticator)));
+        if (retryIfBusy(input)) {
+            return;
+        }
+        if (input.getType() == RecordChannel.ALERT) {
+            this.progressBoardTA.append("\r\n" + new String(input.getBody(), StandardCharsets.UTF_8));
+            return;
+        }
+        CSAuthenticator masterAuthenticator = (CSAuthenticator) MessageCodec.decode(input.getBody());
+
+        // Derive the session key; only the real master can have derived the same one.
+        boolean verified;
+        try {
+            Map<String, Key> keys = SecurityUtil.ReadinCachedKeys(EcHandshake.privateKeyFile(userName));
+            Map<String, Key> masterKeys = SecurityUtil.ReadinCachedKeys(EcHandshake.publicKeyFile("CENTRE"));
+            sessionKey = EcHandshake.deriveWorkerKey((PrivateKey) keys.get(userName), (PublicKey) masterKeys.get("CENTRE"),
+                    keyShare, masterAuthenticator.getKeyShare(),
+                    userName, verificationString, authenticator.getKeyShare(), masterAuthenticator.getKeyShare(), masterAuthenticator.getCipherSuite(),
+                    masterAuthenticator.getCompression(), authenticator.getCipherSuite());
+            verified = verificationString.equals(SecurityUtil.SymDecryptObj(masterAuthenticator.getVerficationString(), sessionKey));
+        } catch (GeneralSecurityException | RuntimeException ex) {
+            verified = false;
+        }
+        if (verified) {
+            this.progressBoardTA.append("\r\n The key share of the master: " + masterAuthenticator.getKeyShare());
+            this.progressBoardTA.append("\r\n The session key in plain text: " + SecurityUtil.keytoB64String(sessionKey));
+            this.progressBoardTA.append("\r\n The mututal authentication is done!\r\n");
+            startSession(userName, masterAuthenticator);
+        } else {
+            this.progressBoardTA.append("\r\n The mututal authentication failed!\r\n");
+        }
+    }
+
+    /**
+     * Resumes the session of the last authenticated user with its session
+     * ticket, which costs the master no RSA operations.
+     *
+     * @return True if the session was resumed or the master asked to retry
+     * later, false if the master did not accept the ticket and the full
+     * authentication is needed.
+     * @throws IOException If the handshake cannot be exchanged with the
+     * master.
+     */
+    private boolean resumeSession() throws IOException {
+        String verificationString = SecurityUtil.RandomAlphaNumericString(128);
+        CSAuthenticator authenticator = resumption.createAuthenticator(verificationString, CIPHER_SUITE);
+        authenticator.setCompression(COMPRESSION);
+        CompletableFuture<Record> reply = sendRequest(RecordChannel.HANDSHAKE, MessageCodec.encode(authenticator));
+
+        Record input = awaitReply(reply);
+        if (retryIfBusy(input)) {
+            return true;
+        }
+        if (input.getType() == RecordChannel.HANDSHAKE) {
+            CSAuthenticator masterAuthenticator = (CSAuthenticator) MessageCodec.decode(input.getBody());
+            SecretKey resumedKey = resumption.openReply(masterAuthenticator, verificationString, CIPHER_SUITE);
+            if (resumedKey != null) {
+                sessionKey = resumedKey;
+                this.progressBoardTA.append("The session has been resumed with the session ticket.\r\n");
+                startSession(authenticator.getPlainUserName(), masterAuthenticator);
+                return true;
+            }
+        }
+        resumption = null;
+        this.progressBoardTA.append("The session ticket was not accepted, authenticating again.\r\n");
+        return false;
+    }
+
+    /**
+     * Schedules another authentication attempt if the master has rejected the
+     * handshake because it is busy.
+     *
+     * @param input The reply of the master to a handshake.
+     * @return True if the reply asks to retry later.
+     */
+    private boolean retryIfBusy(Record input) {
+        if (input.getType() != RecordChannel.ALERT) {
+            return false;
+        }
+        String alert = new String(input.getBody(), StandardCharsets.UTF_8);
+        if (!alert.startsWith(RecordChannel.RETRY_AFTER)) {
+            return false;
+        }
+        int delay;
+        try {
+            delay = Integer.parseInt(alert.substring(RecordChannel.RETRY_AFTER.length()).trim());
+        } catch (NumberFormatException ex) {
+            delay = 1000;
+        }
+        this.progressBoardTA.append("\r\nThe master is busy, retrying the authentication in " + delay + " ms.\r\n");
+        Timer retry = new Timer(delay, event -> {
+            if (authenticateBtn.isEnabled()) {
+                authenticateBtn.doClick();
+            }
+        });
+        retry.setRepeats(false);
+        retry.start();
+        return true;
+    }
+
+    /**
+     * Starts encrypting the messages with the session key once the master is
+     * authenticated, and keeps the new session ticket for the next
+     * reconnect. A master choosing another cipher suite than the one asked
+     * for is not trusted with the session, and the connection is closed.
+     *
+     * @param userName The name of the authenticated user.
+     * @param masterAuthenticator The authenticator sent by the master.
+     */
+    private void startSession(String userName, CSAuthenticator masterAuthenticator) {
+        // Encrypt all further messages with the session key, using the
+        // cipher suite asked for and the compression chosen by the master.
+        String cipherSuite = masterAuthenticator.getCipherSuite();
+        if (!CIPHER_SUITE.equals(cipherSuite)) {
+            this.progressBoardTA.append(" The master chose the cipher suite " + cipherSuite + " instead of " + CIPHER_SUITE + "; the session is refused.\r\n");
+            sessionKey = null;
+            try {
+                socket.close();
+            } catch (IOException ex) {
+            }
+            return;
+        }
+        channel.startSession(sessionKey, cipherSuite, masterAuthenticator.getCompression());
+        this.progressBoardTA.append(" The session cipher suite: " + cipherSuite + "\r\n");
+        if (masterAuthenticator.getCompression() != null) {
+            this.progressBoardTA.append(" The session compression: " + masterAuthenticator.getCompression() + "\r\n");
+        }
+
+        if (masterAuthenticator.getSessionTicket() != null) {
+            resumption = new SessionResumption(userName, masterAuthenticator.getSessionTicket(), sessionKey);
+        }
+
+        // Disable the authentication button and enable the refresh button.
+        authenticateBtn.setEnabled(false);
+        refreshBtn.setEnabled(true);
+    }
+
     private void connectToMaster() {
         try {
             socket = new Socket(masterHost, masterPort);
-            outputStream = new ObjectOutputStream(socket.getOutputStream());
-            inputStream = new ObjectInputStream(socket.getInputStream());
+            channel = new RecordChannel(socket, false);
+            startReplyReader();
 
             // Handling Views
             this.progressBoardTA.setText("TCP connection to the server is done.\r\n");
@@ -467,13 +873,112 @@ public class Worker extends javax.swing.JFrame {
         }
     }
 
+    /**
+     * Starts the thread that receives the replies of the master and hands
+     * each one to the request with the same request ID.
+     */
+    private void startReplyReader() {
+        Thread replyReader = new Thread(() -> {
+            try {
+                while (true) {
+                    Record reply = channel.readMessage();
+                    CompletableFuture<Record> request = pendingRequests.remove(reply.getRequestId());
+                    if (request != null) {
+                        request.complete(reply);
+                    }
+                }
+            } catch (IOException ex) {
+                pendingRequests.values().forEach(request -> request.completeExceptionally(ex));
+                pendingRequests.clear();
+                SwingUtilities.invokeLater(this::connectionLost);
+            }
+        }, "worker-reply-reader");
+        replyReader.setDaemon(true);
+        replyReader.start();
+    }
+
+    /**
+     * Lets the user connect again after the connection to the master was
+     * lost. The session ticket is kept, so the next authentication resumes
+     * the session.
+     */
+    private void connectionLost() {
+        this.progressBoardTA.append("The connection to the master has been lost.\r\n");
+        taskListComboBox.setEnabled(false);
+        refreshBtn.setEnabled(false);
+        calculateBtn.setEnabled(false);
+        authenticateBtn.setEnabled(false);
+        setBtn.setEnabled(true);
+    }
+
+    /**
+     * Sends a request to the master without waiting for its reply.
+     *
+     * @param type The record type of the request.
+     * @param body The record body of the request.
+     * @return The future reply of the master.
+     * @throws IOException If the request cannot be sent.
+     */
+    private CompletableFuture<Record> sendRequest(byte type, byte[] body) throws IOException {
+        int requestId = nextRequestId.incrementAndGet();
+        CompletableFuture<Record> reply = new CompletableFuture<>();
+        pendingRequests.put(requestId, reply);
+        try {
+            channel.writeRecord(type, requestId, body);
+        } catch (IOException ex) {
+            pendingRequests.remove(requestId);
+            throw ex;
+        }
+        return reply;
+    }
+
+    /**
+     * Sends a message to the master without waiting for its reply. The
+     * channel encrypts the message with the session key.
+     *
+     * @param message The message object.
+     * @return The future reply of the master.
+     * @throws IOException If the message cannot be sent.
+     */
+    private CompletableFuture<Record> sendMessage(Object message) throws IOException {
+        int requestId = nextRequestId.incrementAndGet();
+        CompletableFuture<Record> reply = new CompletableFuture<>();
+        pendingRequests.put(requestId, reply);
+        try {
+            channel.writeMessage(requestId, message);
+        } catch (IOException ex) {
+            pendingRequests.remove(requestId);
+            throw ex;
+        }
+        return reply;
+    }
+
+    /**
+     * Waits for the reply to a request sent with `sendRequest` or
+     * `sendMessage`.
+     *
+     * @param reply The future reply.
+     * @return The reply record.
+     * @throws IOException If the connection failed before the reply arrived.
+     */
+    private Record awaitReply(CompletableFuture<Record> reply) throws IOException {
+        try {
+            return reply.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
+        }
+    }
+
     /**
      * Retrieves the selected task's ID from the taskListComboBox.
      *
-     * @return The selected task's ID (index).
+     * @return The ID of the selected task on the master.
      */
     private Integer getSelectedTaskID() {
-        return taskListComboBox.getSelectedIndex();
+        return taskList.getTaskID(taskListComboBox.getSelectedIndex());
     }
 
     /**
@@ -484,7 +989,7 @@ public class Worker extends javax.swing.JFrame {
      * @return The encrypted username in Base64-encoded format.
      */
     private String encrypt(String username, String keyFile) {
-        HashMap keys = SecurityUtil.ReadinKeys(keyFile);
+        Map<String, Key> keys = SecurityUtil.ReadinCachedKeys(keyFile);
         String encryptedRandomBase64String;
         if (keyFile.contains("pri")) {
             encryptedRandomBase64String = SecurityUtil.asyEncrypt(username, (PrivateKey) keys.get(keyFile.split("-")[0]));
@@ -502,7 +1007,7 @@ public class Worker extends javax.swing.JFrame {
      * @return The decrypted text.
      */
     private String decrypt(String cipherText, String keyFile) {
-        HashMap keys = SecurityUtil.ReadinKeys(keyFile);
+        Map<String, Key> keys = SecurityUtil.ReadinCachedKeys(keyFile);
         String decryptedRandomBase64String;
         if (keyFile.contains("pri")) {
             decryptedRandomBase64String = SecurityUtil.asyDecrypt(cipherText, (PrivateKey) keys.get(keyFile.split("-")[0]));
@@ -513,27 +1018,26 @@ public class Worker extends javax.swing.JFrame {
     }
 
     /**
-     * Encrypts an object message using the provided session key.
+     * Decodes the message carried by a reply, which the channel has
+     * already decrypted.
      *
-     * @param message The object message to be encrypted.
-     * @param sessionKey The secret key for symmetric encryption.
-     * @return The encrypted message in Base64-encoded format.
+     * @param reply The reply record.
+     * @return The message object.
      */
-    private String encryptMessage(Object message, SecretKey sessionKey) {
-        return SecurityUtil.SymEncryptObj(message, sessionKey);
+    private Object readMessage(Record reply) {
+        return MessageCodec.decode(reply.getBody());
     }
 
     /**
-     * Decrypts a message using the provided session key.
+     * Decodes the message carried by a reply, taking the task class from the
+     * loader it was defined with.
      *
-     * @param message The encrypted message to be decrypted.
-     * @param sessionKey The secret key for symmetric decryption.
-     * @return The decrypted object.
-     */
-    private Object decryptMessage(String message, SecretKey sessionKey) {
-        byte[] ObjectBytes = SecurityUtil.SymDecrypt((String) message, sessionKey);
-        Object obj = SecurityUtil.convertBytesToObject(ObjectBytes);
-        return obj;
+     * @param reply The reply record.
+     * @param taskClass The loader of the task class.
+     * @return The message object.
+     */
+    private Object readMessage(Record reply, TaskClassLoader taskClass) {
+        return MessageCodec.decode(reply.getBody(), taskClass);
     }
 
     /**